@@ -0,0 +1,129 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ *     Adapters between {@link Future} and {@link CompletionStage}, to use the library
+ *     with code based on {@link CompletableFuture}. None of them blocks or uses
+ *     extra threads: completions are delivered on the event loop of the {@link IOService}.
+ * </p>
+ * <p>
+ *     {@link CompletionStage} is only available from Java 8 (and Android 7.0), so this
+ *     class is compiled apart, in the {@code java8} source set, and must only be used if
+ *     the platform has it. The rest of the library doesn't depend on it.
+ * </p>
+ */
+public final class CompletionStages {
+    private CompletionStages() {}
+
+    /**
+     * Returns a {@link CompletionStage} that completes with the result of the
+     * {@link Future}. The completion of the stage (and its non-async dependent
+     * stages) is done in the event loop of the {@code service}: directly if the
+     * task is completed in one of its event loops, or posted to one if not. If the
+     * {@code service} is already stopped, the stage is completed in the thread that
+     * completed the task.
+     * Cancelling the returned {@link CompletableFuture} will cancel the task too,
+     * if it {@link Future#isCancelable() can be cancelled}.
+     * @param service {@link IOService} where the stage will be completed
+     * @param future the task
+     * @param <T> type of the value
+     * @return a {@link CompletableFuture} for the task
+     */
+    public static @NotNull <T> CompletableFuture<T> toCompletionStage(@NotNull final IOService service, @NotNull final Future<T> future) {
+        final CompletableFuture<T> stage = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if(cancelled && !future.isDone() && future.isCancelable()) future.cancel(mayInterruptIfRunning);
+                return cancelled;
+            }
+        };
+
+        future.whenDone(new Callback<Future<T>>() {
+            @Override
+            public void call(final Future<T> arg) {
+                Runnable complete = new Runnable() {
+                    @Override
+                    public void run() {
+                        if(arg.isSuccessful()) stage.complete(arg.getValueNow());
+                        else if(arg.isCancelled()) stage.cancel(false);
+                        else stage.completeExceptionally(arg.cause());
+                    }
+                };
+                if(service.currentEventLoop() != null) {
+                    complete.run();
+                } else {
+                    try {
+                        service.group.next().execute(complete);
+                    } catch(RejectedExecutionException e) {
+                        //The service is stopped, but the stage must complete anyway
+                        complete.run();
+                    }
+                }
+            }
+        });
+        return stage;
+    }
+
+    /**
+     * Returns a {@link Future} that completes with the result of the {@link CompletionStage}.
+     * The completion of the {@link Future} (and its {@link Future#whenDone(Callback) callbacks})
+     * is done in the event loop of the {@code service}, not in the thread that completed the stage.
+     * Cancelling the task will cancel the stage, if it can be converted to a {@link CompletableFuture}.
+     * @param service {@link IOService} where the task will be completed
+     * @param stage the stage
+     * @param <T> type of the value
+     * @return a {@link Future} for the stage
+     */
+    public static @NotNull <T> Future<T> fromCompletionStage(@NotNull IOService service, @NotNull final CompletionStage<T> stage) {
+        final FutureImpl<T> future = new FutureImpl<>(service, new Procedure() {
+            @Override
+            public void call() {
+                try {
+                    stage.toCompletableFuture().cancel(true);
+                } catch(UnsupportedOperationException ignore) {}
+            }
+        });
+
+        stage.whenCompleteAsync(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable throwable) {
+                if(throwable == null) {
+                    future.trySuccess(value);
+                } else {
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    if(cause instanceof CancellationException) future.postCancelled();
+                    else future.tryError(cause);
+                }
+            }
+        }, service.group);
+        return future;
+    }
+}
@@ -20,6 +20,7 @@ package me.melchor9000.net;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -27,6 +28,8 @@ import org.jetbrains.annotations.Nullable;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Allows to accept connections from others hosts. Basic for a server.
@@ -36,20 +39,26 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
     protected Channel channel;
     protected ServerBootstrap bootstrap;
     protected Callback<SocketType> onConnection;
+    final AcceptorMetrics metrics;
+    private final ChildEventLoopGroup childGroup;
 
     Acceptor(@NotNull IOService service) {
         this.service = service;
-        bootstrap = new ServerBootstrap().group(service.group);
+        this.metrics = new AcceptorMetrics(this, service.metrics);
+        this.childGroup = new ChildEventLoopGroup(service);
+        bootstrap = new ServerBootstrap().group(service.group, childGroup);
     }
 
     Acceptor(@NotNull IOService serverService, @NotNull IOService workerService) {
         this.service = workerService;
-        bootstrap = new ServerBootstrap().group(serverService.group, workerService.group);
+        this.metrics = new AcceptorMetrics(this, workerService.metrics);
+        this.childGroup = new ChildEventLoopGroup(workerService);
+        bootstrap = new ServerBootstrap().group(serverService.group, childGroup);
     }
 
     @Override
     public void close() throws Exception {
-        channel.close().sync();
+        Blocking.syncInterruptibly(channel.close());
     }
 
     /**
@@ -66,7 +75,7 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
      */
     public void waitForClose() {
         checkSocketCreated("waitForClose");
-        channel.closeFuture().syncUninterruptibly();
+        Blocking.await(channel.closeFuture());
     }
 
     /**
@@ -85,10 +94,12 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
      */
     public void bind(@NotNull SocketAddress address) throws InterruptedException {
         if(bootstrap != null) {
-            channel = bootstrap.bind(address).sync().channel();
+            ChannelFuture future = bootstrap.bind(address);
+            Blocking.syncInterruptibly(future);
+            channel = future.channel();
             bootstrap = null;
         } else {
-            channel.bind(address).sync();
+            Blocking.syncInterruptibly(channel.bind(address));
         }
     }
 
@@ -100,10 +111,12 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
      */
     public void bind(@NotNull InetAddress address, int port) throws InterruptedException {
         if(bootstrap != null) {
-            channel = bootstrap.bind(address, port).sync().channel();
+            ChannelFuture future = bootstrap.bind(address, port);
+            Blocking.syncInterruptibly(future);
+            channel = future.channel();
             bootstrap = null;
         } else {
-            channel.bind(new InetSocketAddress(address, port)).sync();
+            Blocking.syncInterruptibly(channel.bind(new InetSocketAddress(address, port)));
         }
     }
 
@@ -114,10 +127,12 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
      */
     public void bind(int port) throws InterruptedException {
         if(bootstrap != null) {
-            channel = bootstrap.bind(port).sync().channel();
+            ChannelFuture future = bootstrap.bind(port);
+            Blocking.syncInterruptibly(future);
+            channel = future.channel();
             bootstrap = null;
         } else {
-            channel.bind(new InetSocketAddress(port)).sync();
+            Blocking.syncInterruptibly(channel.bind(new InetSocketAddress(port)));
         }
     }
 
@@ -149,6 +164,79 @@ public abstract class Acceptor<SocketType extends Socket> implements AutoCloseab
         onConnection = cbk;
     }
 
+    /**
+     * Serves every new connection in a task of the {@code executor}, instead of
+     * in the event loop, so the {@code handler} can use the blocking methods of
+     * the socket freely. With an executor that creates a thread per task (as
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} in newer Java versions),
+     * this gives the classic thread-per-connection model. The socket is closed
+     * when the handler returns or throws.
+     * <p>
+     * Replaces the listener set by {@link #setOnConnectionListener(Callback)}.
+     * @param executor the executor where the connections are served
+     * @param handler the code that serves a connection
+     */
+    public void serve(@NotNull final Executor executor, @NotNull final Callback<SocketType> handler) {
+        setOnConnectionListener(new Callback<SocketType>() {
+            @Override
+            public void call(final SocketType socket) {
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                handler.call(socket);
+                            } finally {
+                                socket.closeAsync();
+                            }
+                        }
+                    });
+                } catch(RejectedExecutionException e) {
+                    socket.closeAsync();
+                }
+            }
+        });
+    }
+
+    /**
+     * Changes how the event loop of every new connection is chosen, between the
+     * event loops of the {@link IOService} of the sockets. By default they are
+     * assigned in round-robin. Already accepted connections stay in their loop.
+     * @param chooser the policy, as {@link EventLoopChooser#LEAST_CONNECTIONS}, or
+     *                null for round-robin
+     */
+    public void setChildEventLoopChooser(@Nullable EventLoopChooser chooser) {
+        childGroup.setChooser(chooser);
+    }
+
+    /**
+     * @return the metrics of this acceptor
+     */
+    public @NotNull AcceptorMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the number of accepted connections that are still open
+     */
+    int openConnections() {
+        return 0;
+    }
+
+    /**
+     * @return the number of accepted connections waiting for an {@code accept} call
+     */
+    int queuedConnections() {
+        return 0;
+    }
+
+    /**
+     * @return the number of {@code accept} calls waiting for a new connection
+     */
+    int pendingAccepts() {
+        return 0;
+    }
+
     /**
      * Sets an option for the acceptor
      * @param option option
@@ -0,0 +1,114 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of an {@link Acceptor}. The accepted connections are also added to the
+ * {@link IOServiceMetrics} of the {@link IOService} of the accepted sockets.
+ * @see Acceptor#metrics()
+ */
+public final class AcceptorMetrics {
+    private final Acceptor<?> acceptor;
+    private final IOServiceMetrics service;
+    private final Counter acceptedConnections = new Counter();
+    private final Counter rejectedConnections = new Counter();
+    final Counter rejectedByConnectionLimit = new Counter();
+    final Counter rejectedByQueueLimit = new Counter();
+    final Counter rejectedByRateLimit = new Counter();
+
+    AcceptorMetrics(@NotNull Acceptor<?> acceptor, @NotNull IOServiceMetrics service) {
+        this.acceptor = acceptor;
+        this.service = service;
+    }
+
+    /**
+     * @return connections accepted. The accept rate is the difference between two
+     * reads divided by the time between them
+     */
+    public @NotNull Counter acceptedConnections() {
+        return acceptedConnections;
+    }
+
+    /**
+     * @return connections closed just after being accepted, because of any of
+     * the admission limits of the acceptor
+     * @see TCPAcceptor#setMaxConnections(int)
+     */
+    public @NotNull Counter rejectedConnections() {
+        return rejectedConnections;
+    }
+
+    /**
+     * @return connections rejected because the maximum of open connections was reached
+     * @see TCPAcceptor#setMaxConnections(int)
+     */
+    public @NotNull Counter rejectedByConnectionLimit() {
+        return rejectedByConnectionLimit;
+    }
+
+    /**
+     * @return connections rejected because the queue of connections waiting for an
+     * {@code accept} call was full
+     * @see TCPAcceptor#setMaxQueuedConnections(int)
+     */
+    public @NotNull Counter rejectedByQueueLimit() {
+        return rejectedByQueueLimit;
+    }
+
+    /**
+     * @return connections rejected because they came faster than the accept rate
+     * @see TCPAcceptor#setAcceptRateLimit(double, int)
+     */
+    public @NotNull Counter rejectedByRateLimit() {
+        return rejectedByRateLimit;
+    }
+
+    /**
+     * @return connections accepted that are still open
+     */
+    public int openConnections() {
+        return acceptor.openConnections();
+    }
+
+    /**
+     * @return connections accepted waiting for an {@code accept} call
+     */
+    public int pendingConnections() {
+        return acceptor.queuedConnections();
+    }
+
+    /**
+     * @return {@code accept} calls waiting for a new connection
+     */
+    public int pendingAccepts() {
+        return acceptor.pendingAccepts();
+    }
+
+    void rejected(@NotNull Counter reason) {
+        reason.increment();
+        rejectedConnections.increment();
+        service.rejectedConnections.increment();
+    }
+
+    void accepted() {
+        acceptedConnections.increment();
+        service.acceptedConnections.increment();
+    }
+}
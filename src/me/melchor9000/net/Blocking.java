@@ -0,0 +1,216 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.BlockingOperationException;
+import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.GenericFutureListener;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *     Waits for netty futures parking the thread with {@link LockSupport}, instead of
+ *     using netty's {@code sync()} and {@code await()}, which wait inside a
+ *     {@code synchronized} block. A virtual thread that waits in a {@code synchronized}
+ *     block is pinned to its carrier thread, but a parked one is unmounted, so with
+ *     these methods the blocking API can be used with one virtual thread per connection.
+ * </p>
+ * <p>
+ *     The thread is unparked from a listener of the future, so the event loop only
+ *     calls {@link LockSupport#unpark(Thread)} when the task is done.
+ * </p>
+ */
+final class Blocking {
+    private static final Method PROMISE_EXECUTOR = promiseExecutor();
+
+    private Blocking() {}
+
+    /**
+     * Waits until the future is done, ignoring interruptions. The interrupted
+     * status of the thread is kept.
+     * @param future future to wait for
+     */
+    static void await(@NotNull io.netty.util.concurrent.Future<?> future) {
+        boolean interrupted = false;
+        while(!future.isDone()) {
+            try {
+                await(future, Long.MAX_VALUE);
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Waits until the future is done.
+     * @param future future to wait for
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static void awaitInterruptibly(@NotNull io.netty.util.concurrent.Future<?> future) throws InterruptedException {
+        await(future, Long.MAX_VALUE);
+    }
+
+    /**
+     * Waits until the future is done, at most {@code nanos} nanoseconds.
+     * @param future future to wait for
+     * @param nanos maximum time to wait
+     * @return true if the future is done
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static boolean awaitInterruptibly(@NotNull io.netty.util.concurrent.Future<?> future, long nanos) throws InterruptedException {
+        return await(future, nanos);
+    }
+
+    /**
+     * Waits until the future is done, ignoring interruptions, and rethrows the
+     * cause if it failed, like netty's {@code syncUninterruptibly()}.
+     * @param future future to wait for
+     */
+    static void sync(@NotNull io.netty.util.concurrent.Future<?> future) {
+        await(future);
+        rethrowIfFailed(future);
+    }
+
+    /**
+     * Waits until the future is done and rethrows the cause if it failed,
+     * like netty's {@code sync()}.
+     * @param future future to wait for
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    static void syncInterruptibly(@NotNull io.netty.util.concurrent.Future<?> future) throws InterruptedException {
+        awaitInterruptibly(future);
+        rethrowIfFailed(future);
+    }
+
+    /**
+     * Gets the value of a done future, like {@link java.util.concurrent.Future#get()}.
+     * @param future a done future
+     * @param <T> type of the value
+     * @return the value
+     * @throws ExecutionException if the future failed
+     * @throws CancellationException if the future was cancelled
+     */
+    static <T> T getNow(@NotNull io.netty.util.concurrent.Future<T> future) throws ExecutionException {
+        if(future.isSuccess()) return future.getNow();
+        if(future.isCancelled()) throw new CancellationException();
+        throw new ExecutionException(future.cause());
+    }
+
+    /**
+     * Waits until the future is done, at most {@code millis} milliseconds, and returns
+     * its value.
+     * @param future future to wait for
+     * @param millis maximum time to wait
+     * @param <T> type of the value
+     * @return the value
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws ExecutionException if the future failed
+     * @throws TimeoutException if the future is not done in time
+     */
+    static <T> T get(@NotNull io.netty.util.concurrent.Future<T> future, long millis) throws InterruptedException, ExecutionException, TimeoutException {
+        if(!awaitInterruptibly(future, TimeUnit.MILLISECONDS.toNanos(millis))) {
+            throw new TimeoutException("Has passed " + millis + "ms and no result got");
+        }
+        return getNow(future);
+    }
+
+    private static void rethrowIfFailed(io.netty.util.concurrent.Future<?> future) {
+        if(!future.isSuccess()) FutureImpl.doThrow(future.cause());
+    }
+
+    private static boolean await(io.netty.util.concurrent.Future<?> future, long nanos) throws InterruptedException {
+        if(future.isDone()) return true;
+        if(Thread.interrupted()) throw new InterruptedException();
+        checkDeadLock(future);
+        IOService.checkBlockingCall();
+
+        Waiter waiter = new Waiter(Thread.currentThread());
+        future.addListener(waiter);
+        try {
+            long deadline = nanos == Long.MAX_VALUE ? 0 : System.nanoTime() + nanos;
+            while(!future.isDone()) {
+                if(nanos == Long.MAX_VALUE) {
+                    LockSupport.park(future);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0) return false;
+                    LockSupport.parkNanos(future, remaining);
+                }
+                if(Thread.interrupted()) throw new InterruptedException();
+            }
+            return true;
+        } finally {
+            if(!future.isDone()) future.removeListener(waiter);
+        }
+    }
+
+    private static void checkDeadLock(io.netty.util.concurrent.Future<?> future) {
+        if(future instanceof ChannelFuture && ((ChannelFuture) future).channel().eventLoop().inEventLoop()) {
+            throw new BlockingOperationException(future.toString());
+        }
+        if(future instanceof DefaultPromise) {
+            //Promises of SslHandler, scheduled tasks... are completed by their executor too
+            EventExecutor executor = executor((DefaultPromise<?>) future);
+            if(executor != null && executor.inEventLoop()) throw new BlockingOperationException(future.toString());
+        }
+    }
+
+    private static EventExecutor executor(DefaultPromise<?> promise) {
+        if(PROMISE_EXECUTOR == null) return null;
+        try {
+            return (EventExecutor) PROMISE_EXECUTOR.invoke(promise);
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    private static Method promiseExecutor() {
+        //DefaultPromise.executor() is protected
+        try {
+            Method method = DefaultPromise.class.getDeclaredMethod("executor");
+            method.setAccessible(true);
+            return method;
+        } catch(Exception e) {
+            return null;
+        }
+    }
+
+    private static class Waiter implements GenericFutureListener<io.netty.util.concurrent.Future<Object>> {
+        private final Thread thread;
+
+        private Waiter(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void operationComplete(io.netty.util.concurrent.Future<Object> future) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+/**
+ * What an {@link IOService} does when a blocking operation (like {@link Future#sync()},
+ * {@link Future#getValue()}, {@link Socket#send(io.netty.buffer.ByteBuf)} or
+ * {@link Socket#close()}) is called from one of its event loop threads, for example
+ * inside a {@link Callback}. Blocking there stalls every socket of the loop, or
+ * never ends if the operation needs the same loop to complete.
+ * @see IOService#setBlockingDetection(BlockingDetection, int)
+ */
+public enum BlockingDetection {
+    /**
+     * Blocking operations are not checked
+     */
+    IGNORE,
+
+    /**
+     * The stack trace of the blocking operation is printed, and then it blocks
+     */
+    LOG,
+
+    /**
+     * The blocking operation throws a {@link io.netty.util.concurrent.BlockingOperationException}
+     */
+    FAIL
+}
@@ -0,0 +1,194 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.channel.Channel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * {@link Publisher} for the received data of a {@link Channel}. The demand
+ * of the subscriber is mapped to the {@code autoRead} option of the channel: when
+ * there's no demand, the channel stops reading. Items that arrive while there's no
+ * demand (a read loop could read more than one message) are kept until requested.
+ * All the state is only modified inside the channel's event loop.
+ * <p>
+ * Every subscriber gets its own {@link Subscription}, that stops working once it
+ * is cancelled or the stream ends, so a late call from a previous subscriber
+ * doesn't affect the next one.
+ */
+abstract class ChannelPublisher<T> implements Publisher<T> {
+    private final Channel channel;
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private Subscriber<? super T> subscriber;
+    private ChannelSubscription subscription;
+    private long demand;
+    private boolean completed;
+    private Throwable error;
+
+    ChannelPublisher(@NotNull Channel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void subscribe(@NotNull final Subscriber<? super T> subscriber) {
+        //In the event loop, so a cancel() called before is already done
+        runInEventLoop(new Runnable() {
+            @Override
+            public void run() {
+                if(ChannelPublisher.this.subscriber != null) {
+                    subscriber.onSubscribe(new Subscription() {
+                        @Override public void request(long n) {}
+                        @Override public void cancel() {}
+                    });
+                    subscriber.onError(new IllegalStateException("This publisher already has a subscriber"));
+                    return;
+                }
+
+                ChannelPublisher.this.subscriber = subscriber;
+                subscription = new ChannelSubscription();
+                demand = 0;
+                completed = false;
+                error = null;
+                channel.config().setAutoRead(false);
+                subscriber.onSubscribe(subscription);
+                subscribed();
+                if(!channel.isActive()) complete();
+            }
+        });
+    }
+
+    /**
+     * Sends the item to the subscriber, or keeps it if there's no demand for
+     * the moment. Must be called inside the event loop.
+     * @param item the received item, which ownership is passed to the subscriber
+     * @return false if there's no subscriber, and then the item is not consumed
+     */
+    boolean offer(@NotNull T item) {
+        if(subscriber == null) return false;
+        if(demand > 0 && pending.isEmpty()) {
+            demand--;
+            subscriber.onNext(item);
+        } else {
+            pending.add(item);
+        }
+        if(demand == 0 && subscriber != null) channel.config().setAutoRead(false);
+        return true;
+    }
+
+    /**
+     * Notifies the end of the stream, once all the pending items are sent.
+     * Must be called inside the event loop.
+     */
+    void complete() {
+        if(subscriber == null) return;
+        completed = true;
+        drain();
+    }
+
+    /**
+     * Notifies an error of the stream, discarding any pending item.
+     * Must be called inside the event loop.
+     * @param cause the error
+     * @return false if there's no subscriber
+     */
+    boolean error(@NotNull Throwable cause) {
+        if(subscriber == null) return false;
+        error = cause;
+        Subscriber<? super T> s = subscriber;
+        finish();
+        if(channel.isActive()) channel.config().setAutoRead(true);
+        s.onError(cause);
+        return true;
+    }
+
+    /**
+     * @return true if a subscriber is receiving the data
+     */
+    boolean hasSubscriber() {
+        return subscriber != null;
+    }
+
+    /**
+     * Called in the event loop after {@link Subscriber#onSubscribe(Subscription)},
+     * for implementations that have some data received before subscribing.
+     */
+    protected void subscribed() {}
+
+    /**
+     * Frees the item when it will not be delivered to the subscriber.
+     * @param item the item to free
+     */
+    protected abstract void release(@NotNull T item);
+
+    private void drain() {
+        while(subscriber != null && demand > 0 && !pending.isEmpty()) {
+            demand--;
+            subscriber.onNext(pending.poll());
+        }
+        if(subscriber != null && completed && error == null && pending.isEmpty()) {
+            Subscriber<? super T> s = subscriber;
+            finish();
+            s.onComplete();
+        }
+    }
+
+    private void finish() {
+        subscriber = null;
+        subscription = null;
+        while(!pending.isEmpty()) release(pending.poll());
+    }
+
+    private class ChannelSubscription implements Subscription {
+        @Override
+        public void request(final long n) {
+            runInEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if(subscription != ChannelSubscription.this) return;
+                    if(n <= 0) {
+                        error(new IllegalArgumentException("Requested a non positive number of items: " + n));
+                        return;
+                    }
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    drain();
+                    if(demand > 0 && subscriber != null && channel.isActive()) channel.config().setAutoRead(true);
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            runInEventLoop(new Runnable() {
+                @Override
+                public void run() {
+                    if(subscription != ChannelSubscription.this) return;
+                    finish();
+                    if(channel.isActive()) channel.config().setAutoRead(true);
+                }
+            });
+        }
+    }
+
+    private void runInEventLoop(Runnable r) {
+        if(channel.eventLoop().inEventLoop()) r.run();
+        else channel.eventLoop().execute(r);
+    }
+}
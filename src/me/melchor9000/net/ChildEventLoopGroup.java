@@ -0,0 +1,130 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.AbstractEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Child group of the acceptors. Registers the accepted channels in the event loop
+ * that the {@link EventLoopChooser} selects, and counts the connections of each loop.
+ * Everything else is delegated to the group of the {@link IOService}.
+ */
+class ChildEventLoopGroup extends AbstractEventExecutorGroup implements EventLoopGroup {
+    private final IOService service;
+    private volatile EventLoopChooser chooser;
+
+    ChildEventLoopGroup(@NotNull IOService service) {
+        this.service = service;
+    }
+
+    void setChooser(@Nullable EventLoopChooser chooser) {
+        this.chooser = chooser;
+    }
+
+    @Override
+    public EventLoop next() {
+        EventLoopChooser chooser = this.chooser;
+        if(chooser == null) return service.group.next();
+        List<EventLoopMetrics> loops = service.metrics.eventLoops();
+        EventLoopMetrics chosen = chooser.choose(loops);
+        if(!loops.contains(chosen)) throw new IllegalStateException("The chooser returned an event loop of another IOService");
+        return (EventLoop) chosen.executor();
+    }
+
+    @Override
+    public ChannelFuture register(Channel channel) {
+        return register(channel.newPromise());
+    }
+
+    @Override
+    public ChannelFuture register(ChannelPromise promise) {
+        EventLoop loop = next();
+        final EventLoopMetrics metrics = service.metrics.of(loop);
+        metrics.connections.incrementAndGet();
+        promise.channel().closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                metrics.connections.decrementAndGet();
+            }
+        });
+        return loop.register(promise);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public ChannelFuture register(Channel channel, ChannelPromise promise) {
+        return register(promise);
+    }
+
+    @Override
+    public Iterator<EventExecutor> iterator() {
+        return service.group.iterator();
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return service.group.isShuttingDown();
+    }
+
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        return service.group.shutdownGracefully(quietPeriod, timeout, unit);
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return service.group.terminationFuture();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void shutdown() {
+        service.group.shutdown();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return service.group.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return service.group.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return service.group.awaitTermination(timeout, unit);
+    }
+}
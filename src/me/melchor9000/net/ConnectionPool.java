@@ -0,0 +1,456 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import io.netty.channel.EventLoop;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.SocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *     Keeps connections to remote endpoints open to reuse them, avoiding the
+ *     connection (and the SSL handshake) for every request. Connections are grouped
+ *     by a {@link Key}, that is the endpoint and if it uses SSL, and how.
+ * </p>
+ * <p>
+ *     A connection is taken from the pool with {@link #acquire(Key)} and returned with
+ *     {@link #release(TCPSocket)} when the request is done, or {@link #discard(TCPSocket)}
+ *     if the connection cannot be reused (for example, the protocol is in an unknown
+ *     state). There can be {@code maxConnectionsPerKey} connections for every key at the
+ *     same time: when there are no more, acquire calls wait in a queue until a
+ *     connection is released.
+ * </p>
+ * <p>
+ *     Idle connections are closed after some time. Before giving an idle connection,
+ *     the pool checks that it is still open and the remote endpoint didn't send anything
+ *     unexpected; this check can be extended overriding {@link #isHealthy(TCPSocket)}.
+ *     When acquiring from an event loop thread, connections of the same event loop are
+ *     preferred, and new connections are created in it, so the callbacks of the
+ *     socket run in the same thread.
+ * </p>
+ */
+public class ConnectionPool implements AutoCloseable {
+    private final IOService service;
+    private final int maxConnectionsPerKey;
+    private final long idleTimeout;
+    private final Map<Key, Entry> entries = new HashMap<>();
+    private final Map<TCPSocket, Pooled> checkedOut = new IdentityHashMap<>();
+    private boolean closed;
+
+    /**
+     * Creates a connection pool
+     * @param service {@link IOService} for the connections
+     * @param maxConnectionsPerKey maximum number of connections open for every key
+     * @param idleTimeout milliseconds an unused connection is kept open
+     */
+    public ConnectionPool(@NotNull IOService service, int maxConnectionsPerKey, long idleTimeout) {
+        if(maxConnectionsPerKey <= 0) throw new IllegalArgumentException("maxConnectionsPerKey must be positive");
+        if(idleTimeout <= 0) throw new IllegalArgumentException("Only positive non 0 values are accepted");
+        this.service = service;
+        this.maxConnectionsPerKey = maxConnectionsPerKey;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Takes a connection for the {@code key}: an idle one if available, a new one if
+     * the limit of connections is not reached, or the first connection released if
+     * there is no one available. Cancelling the task while waiting removes it from
+     * the queue.
+     * @param key where to connect
+     * @return a {@link Future} with the connection
+     */
+    public @NotNull Future<TCPSocket> acquire(@NotNull Key key) {
+        EventLoop loop = service.currentEventLoop();
+        List<TCPSocket> toClose = new ArrayList<>();
+        final FutureImpl<TCPSocket> future;
+        Pooled connection = null;
+
+        synchronized(this) {
+            if(closed) {
+                future = new FutureImpl<>(service, null);
+                future.postError(new IllegalStateException("The pool is closed"));
+                return future;
+            }
+
+            final Entry entry = entry(key);
+            Pooled idle;
+            while((idle = entry.pollIdle(loop)) != null) {
+                idle.idle = false;
+                idle.timeout.cancel();
+                if(isHealthy(idle.socket)) {
+                    checkedOut.put(idle.socket, idle);
+                    break;
+                }
+                entry.connections--;
+                toClose.add(idle.socket);
+            }
+
+            if(idle != null) {
+                future = new FutureImpl<>(service, null);
+                future.postSuccess(idle.socket);
+            } else if(entry.connections < maxConnectionsPerKey) {
+                entry.connections++;
+                connection = new Pooled(entry, key.createSocket(service));
+                future = new FutureImpl<>(service, null);
+            } else {
+                WaiterCancelled whenCancelled = new WaiterCancelled(entry);
+                future = whenCancelled.waiter = new FutureImpl<>(service, whenCancelled);
+                entry.waiters.add(future);
+            }
+        }
+
+        for(TCPSocket socket : toClose) socket.closeAsync();
+        if(connection != null) connect(connection, loop, future);
+        return future;
+    }
+
+    /**
+     * Returns a connection to the pool, to be used by others. If it is closed,
+     * it is discarded.
+     * @param socket connection taken from {@link #acquire(Key)}
+     * @throws IllegalArgumentException if the connection is not checked out from this pool
+     */
+    public void release(@NotNull TCPSocket socket) {
+        Pooled connection;
+        synchronized(this) {
+            connection = checkedOut.remove(socket);
+            if(connection == null) throw new IllegalArgumentException("The socket is not checked out from this pool");
+        }
+        giveBack(connection);
+    }
+
+    /**
+     * Closes a connection taken from the pool, that cannot be reused.
+     * @param socket connection taken from {@link #acquire(Key)}
+     * @throws IllegalArgumentException if the connection is not checked out from this pool
+     */
+    public void discard(@NotNull TCPSocket socket) {
+        Pooled connection;
+        synchronized(this) {
+            connection = checkedOut.remove(socket);
+            if(connection == null) throw new IllegalArgumentException("The socket is not checked out from this pool");
+        }
+        socket.closeAsync();
+        removed(connection.entry);
+    }
+
+    /**
+     * @param key the key
+     * @return number of connections open or connecting for the key
+     */
+    public synchronized int openConnections(@NotNull Key key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.connections : 0;
+    }
+
+    /**
+     * @param key the key
+     * @return number of connections not being used for the key
+     */
+    public synchronized int idleConnections(@NotNull Key key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.idle.size() : 0;
+    }
+
+    /**
+     * @param key the key
+     * @return number of {@link #acquire(Key)} calls waiting for a connection for the key
+     */
+    public synchronized int waitingAcquires(@NotNull Key key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.waiters.size() : 0;
+    }
+
+    /**
+     * Closes all idle connections and fails the waiting {@link #acquire(Key)} calls.
+     * Connections being used are closed when they are released.
+     */
+    @Override
+    public void close() {
+        List<TCPSocket> toClose = new ArrayList<>();
+        List<FutureImpl<TCPSocket>> toFail = new ArrayList<>();
+        synchronized(this) {
+            closed = true;
+            for(Entry entry : entries.values()) {
+                for(Pooled idle : entry.idle) {
+                    idle.idle = false;
+                    idle.timeout.cancel();
+                    toClose.add(idle.socket);
+                }
+                entry.connections -= entry.idle.size();
+                entry.idle.clear();
+                toFail.addAll(entry.waiters);
+                entry.waiters.clear();
+            }
+        }
+        for(TCPSocket socket : toClose) socket.closeAsync();
+        for(FutureImpl<TCPSocket> waiter : toFail) waiter.tryError(new IllegalStateException("The pool is closed"));
+    }
+
+    /**
+     * Checks if an idle connection can be reused before giving it. By default,
+     * checks that the connection is open and there's no data received while it
+     * was idle. Called with the pool locked, so it must not block.
+     * @param socket the idle connection
+     * @return true if can be reused
+     */
+    protected boolean isHealthy(@NotNull TCPSocket socket) {
+        return socket.isOpen() && socket.readableBytes() == 0;
+    }
+
+    private Entry entry(Key key) {
+        Entry entry = entries.get(key);
+        if(entry == null) entries.put(key, entry = new Entry(key));
+        return entry;
+    }
+
+    private void connect(final Pooled connection, @Nullable EventLoop loop, final FutureImpl<TCPSocket> future) {
+        final TCPSocket socket = connection.socket;
+        if(loop != null) socket.setEventLoop(loop);
+        socket.connectAsync(connection.entry.key.endpoint).whenDone(new Callback<Future<Void>>() {
+            @Override
+            public void call(Future<Void> arg) {
+                if(arg.isSuccessful()) {
+                    socket.onClose().whenDone(new Callback<Future<Void>>() {
+                        @Override
+                        public void call(Future<Void> arg) {
+                            closed(connection);
+                        }
+                    });
+                    synchronized(ConnectionPool.this) {
+                        checkedOut.put(socket, connection);
+                    }
+                    if(!future.trySuccess(socket)) release(socket);
+                } else {
+                    future.tryError(arg.cause() != null ? arg.cause() : new IllegalStateException("Connection cancelled"));
+                    removed(connection.entry);
+                }
+            }
+        });
+    }
+
+    private void giveBack(Pooled connection) {
+        FutureImpl<TCPSocket> waiter = null;
+        boolean discard;
+        synchronized(this) {
+            discard = closed || !connection.socket.isOpen();
+            if(!discard) {
+                waiter = connection.entry.waiters.poll();
+                if(waiter != null) {
+                    checkedOut.put(connection.socket, connection);
+                } else {
+                    idle(connection);
+                }
+            }
+        }
+
+        if(discard) {
+            connection.socket.closeAsync();
+            removed(connection.entry);
+        } else if(waiter != null && !waiter.trySuccess(connection.socket)) {
+            //Cancelled at the same time
+            release(connection.socket);
+        }
+    }
+
+    private void idle(final Pooled connection) {
+        connection.idle = true;
+        connection.entry.idle.push(connection);
+        connection.timeout = service.timeout(new Procedure() {
+            @Override
+            public void call() {
+                boolean evicted;
+                synchronized(ConnectionPool.this) {
+                    evicted = connection.idle && connection.entry.idle.remove(connection);
+                    if(evicted) {
+                        connection.idle = false;
+                        connection.entry.connections--;
+                    }
+                }
+                if(evicted) connection.socket.closeAsync();
+            }
+        }, idleTimeout);
+    }
+
+    private void closed(Pooled connection) {
+        boolean wasIdle;
+        synchronized(this) {
+            wasIdle = connection.idle && connection.entry.idle.remove(connection);
+            if(wasIdle) {
+                connection.idle = false;
+                connection.timeout.cancel();
+            }
+        }
+        if(wasIdle) removed(connection.entry);
+    }
+
+    private void removed(Entry entry) {
+        Pooled connection = null;
+        FutureImpl<TCPSocket> waiter = null;
+        synchronized(this) {
+            entry.connections--;
+            //Uses the free slot for the first waiter
+            if(!closed && !entry.waiters.isEmpty() && entry.connections < maxConnectionsPerKey) {
+                entry.connections++;
+                waiter = entry.waiters.poll();
+                connection = new Pooled(entry, entry.key.createSocket(service));
+            }
+        }
+        if(connection != null) connect(connection, null, waiter);
+    }
+
+    /**
+     * Identifies a group of equivalent connections of the pool: the remote
+     * endpoint and the SSL configuration.
+     */
+    public static final class Key {
+        private final SocketAddress endpoint;
+        private final boolean ssl;
+        private final SSLSocketConfigurator configurator;
+
+        private Key(SocketAddress endpoint, boolean ssl, SSLSocketConfigurator configurator) {
+            this.endpoint = endpoint;
+            this.ssl = ssl;
+            this.configurator = configurator;
+        }
+
+        /**
+         * @param endpoint remote endpoint
+         * @return key for {@link TCPSocket} connections to the endpoint
+         */
+        public static @NotNull Key tcp(@NotNull SocketAddress endpoint) {
+            return new Key(endpoint, false, null);
+        }
+
+        /**
+         * @param endpoint remote endpoint
+         * @return key for {@link SSLSocket} connections to the endpoint, with the default configuration
+         */
+        public static @NotNull Key ssl(@NotNull SocketAddress endpoint) {
+            return new Key(endpoint, true, null);
+        }
+
+        /**
+         * @param endpoint remote endpoint
+         * @param configurator configuration of the connections. Keys with the same
+         *                     endpoint and configurator object share connections
+         * @return key for {@link SSLSocket} connections to the endpoint
+         */
+        public static @NotNull Key ssl(@NotNull SocketAddress endpoint, @NotNull SSLSocketConfigurator configurator) {
+            return new Key(endpoint, true, configurator);
+        }
+
+        /**
+         * @return the remote endpoint
+         */
+        public @NotNull SocketAddress endpoint() {
+            return endpoint;
+        }
+
+        TCPSocket createSocket(IOService service) {
+            if(!ssl) return new TCPSocket(service);
+            return configurator != null ? new SSLSocket(service, configurator) : new SSLSocket(service);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return ssl == key.ssl && endpoint.equals(key.endpoint) && configurator == key.configurator;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * endpoint.hashCode() + (ssl ? 1 : 0)) + System.identityHashCode(configurator);
+        }
+
+        @Override
+        public String toString() {
+            return (ssl ? "ssl://" : "tcp://") + endpoint;
+        }
+    }
+
+    private static class Entry {
+        private final Key key;
+        private final ArrayDeque<Pooled> idle = new ArrayDeque<>();
+        private final ArrayDeque<FutureImpl<TCPSocket>> waiters = new ArrayDeque<>();
+        private int connections;
+
+        private Entry(Key key) {
+            this.key = key;
+        }
+
+        /**
+         * Takes the most recently used idle connection, preferring the ones in {@code loop}
+         */
+        private Pooled pollIdle(@Nullable EventLoop loop) {
+            if(loop != null) {
+                Iterator<Pooled> it = idle.iterator();
+                while(it.hasNext()) {
+                    Pooled connection = it.next();
+                    if(connection.socket.channel.eventLoop() == loop) {
+                        it.remove();
+                        return connection;
+                    }
+                }
+            }
+            return idle.poll();
+        }
+    }
+
+    /**
+     * Removes a waiting {@link #acquire(Key)} from the queue when it is cancelled
+     */
+    private final class WaiterCancelled implements Procedure {
+        private final Entry entry;
+        private FutureImpl<TCPSocket> waiter;
+
+        private WaiterCancelled(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void call() {
+            synchronized(ConnectionPool.this) {
+                entry.waiters.remove(waiter);
+            }
+        }
+    }
+
+    private static class Pooled {
+        private final Entry entry;
+        private final TCPSocket socket;
+        private Timeout timeout;
+        private boolean idle;
+
+        private Pooled(Entry entry, TCPSocket socket) {
+            this.entry = entry;
+            this.socket = socket;
+        }
+    }
+}
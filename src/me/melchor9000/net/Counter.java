@@ -0,0 +1,87 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A counter that can be incremented from many threads at the same time without
+ * contention. While only one thread updates it, it is a single {@code long}; when
+ * two threads collide, it is striped in several padded cells, one for every
+ * group of threads, which are summed when the value is read.
+ */
+public final class Counter {
+    static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+    static final int PADDING = 8; //Every cell in its own cache line
+    private static final AtomicLongFieldUpdater<Counter> BASE = AtomicLongFieldUpdater.newUpdater(Counter.class, "base");
+
+    private volatile long base;
+    private volatile AtomicLongArray cells;
+
+    /**
+     * Adds one to the counter
+     */
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * Adds {@code value} to the counter
+     * @param value value to add
+     */
+    void add(long value) {
+        AtomicLongArray cells = this.cells;
+        if(cells == null) {
+            long b = base;
+            if(BASE.compareAndSet(this, b, b + value)) return;
+            cells = inflate();
+        }
+        cells.getAndAdd(stripe() * PADDING, value);
+    }
+
+    /**
+     * @return the current value of the counter. If there are concurrent updates,
+     * they may or may not be included
+     */
+    public long get() {
+        long sum = base;
+        AtomicLongArray cells = this.cells;
+        if(cells != null) {
+            for(int i = 0; i < cells.length(); i += PADDING) sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+
+    /**
+     * @return the stripe of the current thread, between 0 and {@code STRIPES - 1}
+     */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    private synchronized AtomicLongArray inflate() {
+        if(cells == null) cells = new AtomicLongArray(STRIPES * PADDING);
+        return cells;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the event loop of the {@link IOService} that will serve a new connection
+ * accepted by an {@link Acceptor}. By default, the connections are assigned in
+ * round-robin, no matter how loaded each event loop is.
+ * @see Acceptor#setChildEventLoopChooser(EventLoopChooser)
+ */
+public interface EventLoopChooser {
+
+    /**
+     * Chooses the event loop with less connections accepted open. Good when the
+     * connections live long and have similar load.
+     */
+    EventLoopChooser LEAST_CONNECTIONS = new EventLoopChooser() {
+        private final AtomicInteger start = new AtomicInteger();
+
+        @NotNull
+        @Override
+        public EventLoopMetrics choose(@NotNull List<EventLoopMetrics> eventLoops) {
+            //Starts in a different loop every time, so the ties are spread
+            int size = eventLoops.size();
+            int first = (start.getAndIncrement() & Integer.MAX_VALUE) % size;
+            EventLoopMetrics chosen = eventLoops.get(first);
+            for(int i = 1; i < size; i++) {
+                EventLoopMetrics loop = eventLoops.get((first + i) % size);
+                if(loop.connections() < chosen.connections()) chosen = loop;
+            }
+            return chosen;
+        }
+    };
+
+    /**
+     * Chooses the event loop with less tasks waiting to be executed or running, as
+     * counted by {@link EventLoopMetrics#pendingTasks()}. Good when some event loops
+     * are busier than others, for example, because of heavy tasks. The counts are
+     * read without waiting for the loops, so a blocked loop doesn't stop the accepts.
+     */
+    EventLoopChooser LEAST_PENDING_TASKS = new EventLoopChooser() {
+        private final AtomicInteger start = new AtomicInteger();
+
+        @NotNull
+        @Override
+        public EventLoopMetrics choose(@NotNull List<EventLoopMetrics> eventLoops) {
+            int size = eventLoops.size();
+            int first = (start.getAndIncrement() & Integer.MAX_VALUE) % size;
+            EventLoopMetrics chosen = eventLoops.get(first);
+            int chosenTasks = chosen.pendingTasks();
+            for(int i = 1; i < size; i++) {
+                EventLoopMetrics loop = eventLoops.get((first + i) % size);
+                int tasks = loop.pendingTasks();
+                if(tasks < chosenTasks || (tasks == chosenTasks && loop.connections() < chosen.connections())) {
+                    chosen = loop;
+                    chosenTasks = tasks;
+                }
+            }
+            return chosen;
+        }
+    };
+
+    /**
+     * Chooses one of the event loops. Called from the event loop of the acceptor for
+     * every new connection, so it must be fast and must not block.
+     * @param eventLoops the event loops of the {@link IOService} of the sockets
+     * @return one of the {@code eventLoops}
+     */
+    @NotNull EventLoopMetrics choose(@NotNull List<EventLoopMetrics> eventLoops);
+}
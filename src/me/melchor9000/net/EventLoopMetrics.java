@@ -0,0 +1,127 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import io.netty.util.concurrent.EventExecutor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Metrics of one of the event loops (threads) of an {@link IOService}. Times are
+ * in nanoseconds. The task metrics only include the blocks of code executed through
+ * {@link IOService#post(Procedure)} and {@link IOService#schedule(Procedure, long)},
+ * not the I/O events of the sockets. The lag is only measured when the lag probe
+ * is enabled with {@link IOService#setLagProbe(long, long, Callback)}.
+ * @see IOServiceMetrics#eventLoops()
+ */
+public final class EventLoopMetrics {
+    private final EventExecutor loop;
+    final Histogram taskQueueWait = new Histogram();
+    final Histogram taskTime = new Histogram();
+    final Histogram lag = new Histogram();
+    volatile long probeTime;
+    volatile boolean lagReported;
+    volatile Thread thread;
+    final AtomicInteger connections = new AtomicInteger();
+    final AtomicInteger pendingTasks = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+
+    EventLoopMetrics(@NotNull EventExecutor loop) {
+        this.loop = loop;
+    }
+
+    /**
+     * Can be called from any thread without waiting for the event loop, so it
+     * works even if the loop is blocked.
+     * @return number of blocks of code from {@link IOService#post(Procedure)} that
+     * are waiting to be executed or running in the event loop
+     */
+    public int pendingTasks() {
+        return pendingTasks.get();
+    }
+
+    /**
+     * @return number of connections accepted by the acceptors that are open and
+     * served by this event loop
+     * @see Acceptor#setChildEventLoopChooser(EventLoopChooser)
+     */
+    public int connections() {
+        return connections.get();
+    }
+
+    /**
+     * @return time that the tasks have waited in the queue
+     */
+    public @NotNull Histogram taskQueueWait() {
+        return taskQueueWait;
+    }
+
+    /**
+     * @return time that the tasks took to execute
+     */
+    public @NotNull Histogram taskTime() {
+        return taskTime;
+    }
+
+    /**
+     * @return time the probes of the lag probe have waited to be executed
+     */
+    public @NotNull Histogram lag() {
+        return lag;
+    }
+
+    /**
+     * @return how long the current probe is waiting to be executed, or 0 if there's
+     * no probe waiting. If this value grows, the event loop is blocked
+     */
+    public long currentLag() {
+        long probeTime = this.probeTime;
+        return probeTime == 0 ? 0 : System.nanoTime() - probeTime;
+    }
+
+    /**
+     * Measures the load of the tasks in the event loop: the time recorded in
+     * {@link #taskTime()} with respect to the time since the loop was created.
+     * The rest of the time is spent in I/O or waiting for it.
+     * @return the percentage of the time spent executing tasks, between 0 and 100
+     * @see IOService#setIoRatio(int)
+     */
+    public double taskTimeRatio() {
+        long elapsed = System.nanoTime() - startTime;
+        return elapsed <= 0 ? 0 : Math.min(100, 100.0 * taskTime.sum() / elapsed);
+    }
+
+    /**
+     * @return the thread of the event loop, or null if it is not known yet. It is known
+     * after the first lag probe runs. Useful to get the stack trace of a blocked loop
+     */
+    public @Nullable Thread thread() {
+        return thread;
+    }
+
+    @NotNull EventExecutor executor() {
+        return loop;
+    }
+
+    @Override
+    public String toString() {
+        return "pendingTasks=" + pendingTasks() + " connections=" + connections() + " taskTimeRatio=" + taskTimeRatio() + " taskQueueWait={" + taskQueueWait + "} taskTime={" + taskTime + "} lag={" + lag + "}";
+    }
+}
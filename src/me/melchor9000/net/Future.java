@@ -92,6 +92,41 @@ public interface Future<ReturnType> {
      */
     @NotNull Future<ReturnType> setTimeout(long milliseconds);
 
+    /**
+     * Returns a new {@link Future} that, when this task is successful, will have
+     * the value returned by {@code transformer} called with the value of this task.
+     * If this task fails or the transformer throws, the new task fails with the
+     * same cause. The transformer is called in the same thread that completes
+     * this task. Cancelling the new task cancels this one.
+     * @param transformer the transformation to apply to the value
+     * @param <T> type of the new value
+     * @return a {@link Future} for the transformed value
+     */
+    @NotNull <T> Future<T> map(@NotNull Transformer<ReturnType, T> transformer);
+
+    /**
+     * Returns a new {@link Future} that, when this task is successful, will
+     * follow the task returned by {@code transformer} called with the value of
+     * this task. If any of both tasks fail or the transformer throws, the new task
+     * fails with the same cause. Cancelling the new task cancels the task that is
+     * running at that moment.
+     * @param transformer returns the next task from the value of this one
+     * @param <T> type of the value of the next task
+     * @return a {@link Future} for the value of the next task
+     */
+    @NotNull <T> Future<T> thenCompose(@NotNull Transformer<ReturnType, Future<T>> transformer);
+
+    /**
+     * Returns a new {@link Future} with the same result as this task, but that
+     * fails with a {@link TimeoutException} if this task is not done after
+     * {@code milliseconds}. When timed out, this task is cancelled if it
+     * {@link #isCancelable() can be cancelled}. Unlike {@link #setTimeout(long)},
+     * works with any kind of task.
+     * @param milliseconds time to timeout the task
+     * @return a {@link Future} with the timeout
+     */
+    @NotNull Future<ReturnType> withTimeout(long milliseconds);
+
     /**
      * Returns the value of the future if it is done. If not, then
      * returns {@code null}. Beware that {@code null} can also be
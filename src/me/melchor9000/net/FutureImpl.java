@@ -46,7 +46,7 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
     private Condition waitDone = lock.newCondition();
     private final IOService service;
     private final Procedure whenCancelled;
-    private Future<?> timeoutFuture;
+    private Timeout timeout;
 
     public FutureImpl(IOService service, Procedure whenCancelled) {
         this.service = service;
@@ -89,9 +89,8 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
         if(!isCancelable()) throw new IllegalStateException("This task cannot be cancelled");
         lock.lock();
         if(!cancelled && !done.get()) {
-            whenCancelled.call();
-            cancelled = true;
-            postError(new CancellationException("Task was cancelled"));
+            cancelled();
+            postCancelled();
         }
         lock.unlock();
     }
@@ -116,14 +115,11 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
         if(milliseconds <= 0) throw new IllegalArgumentException("Only positive non 0 values are accepted");
         if(isDone()) throw new IllegalStateException("The task is done");
         if(!isCancelable()) throw new IllegalStateException("This task cannot be cancelled");
-        if(timeoutFuture != null) timeoutFuture.cancel(false);
-        timeoutFuture = service.schedule(new Procedure() {
+        if(timeout != null) timeout.cancel();
+        timeout = service.timeout(new Procedure() {
             @Override
             public void call() {
-                if(!isDone()) {
-                    whenCancelled.call();
-                    cancel(true);
-                }
+                if(!isDone()) cancel(true);
             }
         }, milliseconds);
         return this;
@@ -147,12 +143,15 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
 
     @Override
     public ReturnType getValue(long millis) throws InterruptedException, ExecutionException, TimeoutException {
-        if(!done.get()) {
-            lock.lock();
-            if(!waitDone.await(millis, TimeUnit.MILLISECONDS)) {
-                lock.unlock();
-                throw new TimeoutException("Has passed " + millis + "ms and no result got");
+        if(!done.get()) IOService.checkBlockingCall();
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+            while(!done.get()) {
+                if(nanos <= 0) throw new TimeoutException("Has passed " + millis + "ms and no result got");
+                nanos = waitDone.awaitNanos(nanos);
             }
+        } finally {
             lock.unlock();
         }
         if(!isSuccessful()) throw new ExecutionException(cause);
@@ -177,9 +176,11 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
 
     @Override
     public ReturnType getValue() throws ExecutionException, InterruptedException {
-        if(!done.get()) {
-            lock.lock();
-            waitDone.await();
+        if(!done.get()) IOService.checkBlockingCall();
+        lock.lock();
+        try {
+            while(!done.get()) waitDone.await();
+        } finally {
             lock.unlock();
         }
         if(!isSuccessful()) throw new ExecutionException(cause);
@@ -188,11 +189,7 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
 
     @Override
     public ReturnType getValueUninterrumptibly() throws ExecutionException, InterruptedException {
-        if(!done.get()) {
-            lock.lock();
-            waitDone.awaitUninterruptibly();
-            lock.unlock();
-        }
+        awaitUninterruptibly();
         if(!isSuccessful()) throw new ExecutionException(cause);
         return returnValue;
     }
@@ -200,39 +197,100 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
     @NotNull
     @Override
     public Future<ReturnType> sync() {
-        if(!done.get()) {
-            lock.lock();
-            waitDone.awaitUninterruptibly();
-            lock.unlock();
-            if(!isSuccessful()) doThrow(cause);
-        }
+        awaitUninterruptibly();
+        if(!isSuccessful()) doThrow(cause);
         return this;
     }
 
+    @NotNull
+    @Override
+    public <T> Future<T> map(@NotNull Transformer<ReturnType, T> transformer) {
+        return new Futures.MappedFuture<>(service, this, transformer);
+    }
+
+    @NotNull
+    @Override
+    public <T> Future<T> thenCompose(@NotNull Transformer<ReturnType, Future<T>> transformer) {
+        return new Futures.ComposedFuture<>(service, this, transformer);
+    }
+
+    @NotNull
+    @Override
+    public Future<ReturnType> withTimeout(long milliseconds) {
+        return new Futures.TimeoutFuture<>(service, this, milliseconds);
+    }
+
     public void postSuccess(@Nullable ReturnType result) {
-        if(isDone()) throw new IllegalStateException("Task is already done");
-        lock.lock();
-        if(timeoutFuture != null) timeoutFuture.cancel(false);
-        returnValue = result;
-        done.set(successful = true);
-        lock.unlock();
-        executeListeners();
-        lock.lock();
-        waitDone.signalAll();
-        lock.unlock();
+        if(!trySuccess(result)) throw new IllegalStateException("Task is already done");
     }
 
     public void postError(@NotNull Throwable cause) {
-        if(isDone()) throw new IllegalStateException("Task is already done");
+        if(!tryError(cause)) throw new IllegalStateException("Task is already done");
+    }
+
+    /**
+     * Like {@link #postSuccess(Object)}, but does nothing if the task is done.
+     * @param result the returned value
+     * @return true if this call completed the task
+     */
+    boolean trySuccess(@Nullable ReturnType result) {
+        return complete(result, null, false);
+    }
+
+    /**
+     * Like {@link #postError(Throwable)}, but does nothing if the task is done.
+     * @param cause cause of the failure
+     * @return true if this call completed the task
+     */
+    boolean tryError(@NotNull Throwable cause) {
+        return complete(null, cause, false);
+    }
+
+    /**
+     * Marks the task as cancelled, without calling the cancel {@link Procedure}.
+     * Used when the cancellation comes from another task.
+     * @return true if this call completed the task
+     */
+    boolean postCancelled() {
+        return complete(null, new CancellationException("Task was cancelled"), true);
+    }
+
+    /**
+     * Called when the task is cancelled, before it is marked as done.
+     * By default calls the {@link Procedure} passed in the constructor.
+     */
+    protected void cancelled() {
+        whenCancelled.call();
+    }
+
+    private boolean complete(ReturnType result, Throwable cause, boolean cancelled) {
         lock.lock();
-        if(timeoutFuture != null) timeoutFuture.cancel(false);
+        if(done.get()) {
+            lock.unlock();
+            return false;
+        }
+        if(timeout != null) timeout.cancel();
+        this.returnValue = result;
         this.cause = cause;
+        this.cancelled = cancelled;
+        this.successful = cause == null;
         done.set(true);
         lock.unlock();
         executeListeners();
         lock.lock();
         waitDone.signalAll();
         lock.unlock();
+        return true;
+    }
+
+    private void awaitUninterruptibly() {
+        if(!done.get()) IOService.checkBlockingCall();
+        lock.lock();
+        try {
+            while(!done.get()) waitDone.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
     }
 
     private void executeListeners() {
@@ -246,7 +304,7 @@ public class FutureImpl<ReturnType> implements Future<ReturnType> {
         }
     }
 
-    private void doThrow(Throwable e) {
+    static void doThrow(Throwable e) {
         // http://stackoverflow.com/questions/6302015/throw-checked-exceptions
         FutureImpl.<RuntimeException> doThrow0(e);
     }
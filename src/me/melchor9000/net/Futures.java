@@ -0,0 +1,309 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Utilities to combine {@link Future}{@code s}.</p>
+ * <p>
+ *     All combined tasks are completed in the same thread that completes the
+ *     last of the tasks needed, usually the event loop thread, without posting
+ *     anything. Cancelling a combined task will try to cancel the tasks it
+ *     depends on.
+ * </p>
+ * @see Future#map(Transformer)
+ * @see Future#thenCompose(Transformer)
+ * @see Future#withTimeout(long)
+ */
+public final class Futures {
+    private Futures() {}
+
+    /**
+     * Returns a {@link Future} that completes when all the tasks are successful,
+     * with a {@link List} of their values in the same order. If one of them fails,
+     * the returned task fails with the same cause, without waiting for the others.
+     * @param service {@link IOService} for the returned task
+     * @param futures tasks to wait for
+     * @param <T> type of the value of the tasks
+     * @return a {@link Future} with all the values
+     */
+    public static @NotNull <T> Future<List<T>> allOf(@NotNull IOService service, @NotNull Iterable<? extends Future<T>> futures) {
+        return new AllFuture<>(service, futures);
+    }
+
+    /**
+     * Returns a {@link Future} that completes when all the tasks are successful,
+     * with a {@link List} of their values in the same order. If one of them fails,
+     * the returned task fails with the same cause, without waiting for the others.
+     * @param service {@link IOService} for the returned task
+     * @param futures tasks to wait for
+     * @param <T> type of the value of the tasks
+     * @return a {@link Future} with all the values
+     */
+    @SafeVarargs
+    public static @NotNull <T> Future<List<T>> allOf(@NotNull IOService service, @NotNull Future<T>... futures) {
+        //Copied instead of Arrays.asList, so the varargs array doesn't escape
+        List<Future<T>> list = new ArrayList<>(futures.length);
+        for(Future<T> future : futures) list.add(future);
+        return allOf(service, list);
+    }
+
+    /**
+     * Returns a {@link Future} that completes with the result of the first task
+     * that is done, either successful or not. The other tasks are not cancelled.
+     * @param service {@link IOService} for the returned task
+     * @param futures tasks to wait for, at least one
+     * @param <T> type of the value of the tasks
+     * @return a {@link Future} with the result of the first task done
+     */
+    public static @NotNull <T> Future<T> anyOf(@NotNull IOService service, @NotNull Iterable<? extends Future<T>> futures) {
+        return new AnyFuture<>(service, futures);
+    }
+
+    /**
+     * Returns a {@link Future} that completes with the result of the first task
+     * that is done, either successful or not. The other tasks are not cancelled.
+     * @param service {@link IOService} for the returned task
+     * @param futures tasks to wait for, at least one
+     * @param <T> type of the value of the tasks
+     * @return a {@link Future} with the result of the first task done
+     */
+    @SafeVarargs
+    public static @NotNull <T> Future<T> anyOf(@NotNull IOService service, @NotNull Future<T>... futures) {
+        List<Future<T>> list = new ArrayList<>(futures.length);
+        for(Future<T> future : futures) list.add(future);
+        return anyOf(service, list);
+    }
+
+    private static void fail(FutureImpl<?> future, Future<?> from) {
+        if(from.isCancelled()) future.postCancelled();
+        else future.tryError(from.cause());
+    }
+
+    private static void cancelTask(Future<?> future) {
+        if(future != null && !future.isDone() && future.isCancelable()) future.cancel(true);
+    }
+
+    /* The combined futures are also the listeners of the tasks they depend on,
+     * so every combinator only allocates one object (besides the FutureImpl internals).
+     */
+
+    static final class MappedFuture<From, To> extends FutureImpl<To> implements Callback<Future<From>> {
+        private final Future<From> source;
+        private final Transformer<From, To> transformer;
+
+        MappedFuture(IOService service, Future<From> source, Transformer<From, To> transformer) {
+            super(service, null);
+            this.source = source;
+            this.transformer = transformer;
+            source.whenDone(this);
+        }
+
+        @Override
+        public void call(Future<From> arg) {
+            if(arg.isSuccessful()) {
+                To value;
+                try {
+                    value = transformer.call(arg.getValueNow());
+                } catch(Throwable t) {
+                    tryError(t);
+                    return;
+                }
+                trySuccess(value);
+            } else {
+                fail(this, arg);
+            }
+        }
+
+        @Override
+        public boolean isCancelable() {
+            return true;
+        }
+
+        @Override
+        protected void cancelled() {
+            cancelTask(source);
+        }
+    }
+
+    static final class ComposedFuture<From, To> extends FutureImpl<To> implements Callback<Future<Object>> {
+        private final Transformer<From, Future<To>> transformer;
+        private volatile Future<?> current;
+        private boolean composed;
+
+        @SuppressWarnings("unchecked")
+        ComposedFuture(IOService service, Future<From> source, Transformer<From, Future<To>> transformer) {
+            super(service, null);
+            this.transformer = transformer;
+            this.current = source;
+            ((Future) source).whenDone(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void call(Future<Object> arg) {
+            if(!arg.isSuccessful()) {
+                fail(this, arg);
+            } else if(!composed) {
+                composed = true;
+                Future<To> next;
+                try {
+                    next = transformer.call((From) arg.getValueNow());
+                    if(next == null) throw new NullPointerException("The transformer returned a null Future");
+                } catch(Throwable t) {
+                    tryError(t);
+                    return;
+                }
+                current = next;
+                if(isDone()) cancelTask(next);
+                else ((Future) next).whenDone(this);
+            } else {
+                trySuccess((To) arg.getValueNow());
+            }
+        }
+
+        @Override
+        public boolean isCancelable() {
+            return true;
+        }
+
+        @Override
+        protected void cancelled() {
+            cancelTask(current);
+        }
+    }
+
+    static final class TimeoutFuture<T> extends FutureImpl<T> implements Callback<Future<T>>, Procedure {
+        private final Future<T> source;
+        private final long milliseconds;
+        private volatile Timeout timeout;
+
+        TimeoutFuture(IOService service, Future<T> source, long milliseconds) {
+            super(service, null);
+            if(milliseconds <= 0) throw new IllegalArgumentException("Only positive non 0 values are accepted");
+            this.source = source;
+            this.milliseconds = milliseconds;
+            source.whenDone(this);
+            if(!isDone()) {
+                timeout = service.timeout(this, milliseconds);
+                if(isDone()) timeout.cancel();
+            }
+        }
+
+        @Override
+        public void call(Future<T> arg) {
+            Timeout timeout = this.timeout;
+            if(timeout != null && timeout.isExpired()) timedOut();
+            else if(arg.isSuccessful()) trySuccess(arg.getValueNow());
+            else fail(this, arg);
+            if(timeout != null) timeout.cancel();
+        }
+
+        @Override
+        public void call() {
+            //Cancels the source before failing, so whoever waits for this sees it cancelled
+            cancelTask(source);
+            timedOut();
+        }
+
+        private void timedOut() {
+            tryError(new TimeoutException("Has passed " + milliseconds + "ms and the task is not done"));
+        }
+
+        @Override
+        public boolean isCancelable() {
+            return true;
+        }
+
+        @Override
+        protected void cancelled() {
+            if(timeout != null) timeout.cancel();
+            cancelTask(source);
+        }
+    }
+
+    static final class AllFuture<T> extends FutureImpl<List<T>> implements Callback<Future<T>> {
+        private final List<Future<T>> futures;
+        private final AtomicInteger remaining;
+
+        AllFuture(IOService service, Iterable<? extends Future<T>> futures) {
+            super(service, null);
+            this.futures = new ArrayList<>();
+            for(Future<T> future : futures) this.futures.add(future);
+            this.remaining = new AtomicInteger(this.futures.size());
+            if(this.futures.isEmpty()) trySuccess(new ArrayList<T>());
+            for(Future<T> future : this.futures) future.whenDone(this);
+        }
+
+        @Override
+        public void call(Future<T> arg) {
+            if(!arg.isSuccessful()) {
+                fail(this, arg);
+            } else if(remaining.decrementAndGet() == 0) {
+                List<T> values = new ArrayList<>(futures.size());
+                for(Future<T> future : futures) values.add(future.getValueNow());
+                trySuccess(values);
+            }
+        }
+
+        @Override
+        public boolean isCancelable() {
+            return true;
+        }
+
+        @Override
+        protected void cancelled() {
+            for(Future<T> future : futures) cancelTask(future);
+        }
+    }
+
+    static final class AnyFuture<T> extends FutureImpl<T> implements Callback<Future<T>> {
+        private final List<Future<T>> futures;
+
+        AnyFuture(IOService service, Iterable<? extends Future<T>> futures) {
+            super(service, null);
+            this.futures = new ArrayList<>();
+            for(Future<T> future : futures) this.futures.add(future);
+            if(this.futures.isEmpty()) throw new IllegalArgumentException("At least one Future is needed");
+            for(Future<T> future : this.futures) future.whenDone(this);
+        }
+
+        @Override
+        public void call(Future<T> arg) {
+            if(arg.isSuccessful()) trySuccess(arg.getValueNow());
+            else fail(this, arg);
+        }
+
+        @Override
+        public boolean isCancelable() {
+            return true;
+        }
+
+        @Override
+        protected void cancelled() {
+            for(Future<T> future : futures) cancelTask(future);
+        }
+    }
+}
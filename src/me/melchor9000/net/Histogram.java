@@ -0,0 +1,128 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of values (usually latencies in nanoseconds) in buckets of powers
+ * of two: a value {@code v} is counted in the bucket {@code [2^(n-1), 2^n)}. The
+ * values are not stored, so recording costs the same always and the memory used
+ * is fixed, with the precision of the bucket size. Safe to use from many threads:
+ * like {@link Counter}, the buckets are a single array while only one thread
+ * records, and are striped for every group of threads when two of them collide.
+ */
+public final class Histogram {
+    private static final int BUCKETS = 64;
+    private static final int STRIDE = BUCKETS + Counter.PADDING; //Stripes don't share cache lines
+
+    private final AtomicLongArray base = new AtomicLongArray(BUCKETS);
+    private volatile AtomicLongArray cells;
+    private final Counter sum = new Counter();
+
+    /**
+     * Records a value. Negative values are counted as 0.
+     * @param value value to record
+     */
+    public void record(long value) {
+        if(value < 0) value = 0;
+        int bucket = BUCKETS - Long.numberOfLeadingZeros(value);
+        AtomicLongArray cells = this.cells;
+        if(cells == null) {
+            long b = base.get(bucket);
+            if(base.compareAndSet(bucket, b, b + 1)) {
+                sum.add(value);
+                return;
+            }
+            cells = inflate();
+        }
+        cells.getAndIncrement(Counter.stripe() * STRIDE + bucket);
+        sum.add(value);
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long count() {
+        long count = 0;
+        for(long bucket : counts()) count += bucket;
+        return count;
+    }
+
+    /**
+     * @return sum of all the recorded values
+     */
+    public long sum() {
+        return sum.get();
+    }
+
+    /**
+     * @return the mean of the recorded values, or 0 if there's none
+     */
+    public double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum() / count;
+    }
+
+    /**
+     * Returns an upper bound of the value below which are the {@code quantile}
+     * part of the recorded values. The result is the upper limit of the bucket
+     * where the quantile is, so it could be up to twice the real value.
+     * @param quantile a value between 0 and 1, for example {@code 0.99} for the
+     *                 percentile 99
+     * @return the upper limit of the quantile, or 0 if there's no values
+     */
+    public long quantile(double quantile) {
+        if(quantile < 0 || quantile > 1) throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        long counts[] = counts();
+        long count = 0;
+        for(long bucket : counts) count += bucket;
+        long position = (long) Math.ceil(quantile * count);
+        long accumulated = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            accumulated += counts[i];
+            if(accumulated >= position && accumulated != 0) return i == 0 ? 0 : (1L << i) - 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count() + " mean=" + mean() + " p50=" + quantile(0.5) + " p99=" + quantile(0.99);
+    }
+
+    /**
+     * @return the counts of every bucket, with the stripes merged
+     */
+    private long[] counts() {
+        long counts[] = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) counts[i] = base.get(i);
+        AtomicLongArray cells = this.cells;
+        if(cells != null) {
+            for(int stripe = 0; stripe < cells.length(); stripe += STRIDE) {
+                for(int i = 0; i < BUCKETS; i++) counts[i] += cells.get(stripe + i);
+            }
+        }
+        return counts;
+    }
+
+    private synchronized AtomicLongArray inflate() {
+        if(cells == null) cells = new AtomicLongArray(Counter.STRIPES * STRIDE);
+        return cells;
+    }
+}
@@ -18,20 +18,52 @@
 
 package me.melchor9000.net;
 
+import io.netty.channel.DefaultSelectStrategyFactory;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SelectStrategy;
+import io.netty.channel.SelectStrategyFactory;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.TimerTask;
+import io.netty.util.concurrent.BlockingOperationException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Reprents a number of threads that executes the same Event Loop for I/O
  * operations and scheduled blocks of code. Used by {@link Socket} and
  * its implementations.
+ * <p>
+ * All the services share one timer thread for {@link #timeout(Procedure, long)}
+ * and the lag probes, which is stopped when the last service is cancelled.
  */
 public class IOService {
+    private static final FastThreadLocal<IOService> current = new FastThreadLocal<>();
     final EventLoopGroup group;
+    final IOServiceMetrics metrics;
+    private LagProbe lagProbe;
+    private volatile BlockingDetection blockingDetection = BlockingDetection.IGNORE;
+    private volatile int blockingSampling = 1;
+    private static final Object timerLock = new Object();
+    private static HashedWheelTimer sharedTimer;
+    private static TimerThreadFactory sharedTimerThreads;
+    private static int timerUsers;
+    private final HashedWheelTimer timer;
+    private final AtomicBoolean stopped = new AtomicBoolean();
 
     /**
      * Creates one thread that will run all associated IO events
@@ -46,7 +78,43 @@ public class IOService {
      * @param numberOfThreads number of threads
      */
     public IOService(int numberOfThreads) {
-        group = new NioEventLoopGroup(numberOfThreads);
+        this(numberOfThreads, new ThreadPlacement());
+    }
+
+    /**
+     * Creates {@code numberOfThreads} threads that will run all
+     * associated IO events, named and placed in the CPUs as the
+     * {@code placement} tells.
+     * @param numberOfThreads number of threads
+     * @param placement how the threads are created
+     */
+    public IOService(int numberOfThreads, @NotNull final ThreadPlacement placement) {
+        final AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = new DefaultThreadFactory(NioEventLoopGroup.class) {
+            @Override
+            protected Thread newThread(final Runnable r, String name) {
+                final int index = threadIndex.getAndIncrement();
+                String placedName = placement.threadName(index);
+                return super.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        current.set(IOService.this);
+                        placement.threadStarted(index, Thread.currentThread());
+                        r.run();
+                    }
+                }, placedName != null ? placedName : name);
+            }
+        };
+        final int busyPollIterations = placement.busyPollIterations();
+        SelectStrategyFactory selectStrategyFactory = busyPollIterations <= 0 ? DefaultSelectStrategyFactory.INSTANCE : new SelectStrategyFactory() {
+            @Override
+            public SelectStrategy newSelectStrategy() {
+                return new ThreadPlacement.BusyPollSelectStrategy(busyPollIterations);
+            }
+        };
+        group = new NioEventLoopGroup(numberOfThreads, threadFactory, SelectorProvider.provider(), selectStrategyFactory);
+        metrics = new IOServiceMetrics(group);
+        timer = acquireTimer();
     }
 
     /**
@@ -54,12 +122,15 @@ public class IOService {
      * @param block block of code
      */
     public void post(final @NotNull Procedure block) {
-        group.submit(new Runnable() {
-            @Override
-            public void run() {
-                block.call();
-            }
-        });
+        EventExecutor loop = group.next();
+        EventLoopMetrics loopMetrics = metrics.of(loop);
+        loopMetrics.pendingTasks.incrementAndGet();
+        try {
+            loop.submit(new MeasuredTask(block, loopMetrics, System.nanoTime(), true));
+        } catch(RejectedExecutionException e) {
+            loopMetrics.pendingTasks.decrementAndGet();
+            throw e;
+        }
     }
 
     /**
@@ -70,20 +141,143 @@ public class IOService {
      * @return a {@link Future} for the scheduled task
      */
     public @NotNull Future<?> schedule(final @NotNull Procedure block, long milliseconds) {
-        return new NettyFuture<>(group.schedule(new Runnable() {
-            @Override
-            public void run() {
-                block.call();
-            }
-        }, milliseconds, TimeUnit.MILLISECONDS), this);
+        EventExecutor loop = group.next();
+        long runTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        return new NettyFuture<>(loop.schedule(new MeasuredTask(block, metrics.of(loop), runTime, false),
+                milliseconds, TimeUnit.MILLISECONDS), this);
+    }
+
+    /**
+     * Executes the block of code in the event's loop Thread, when
+     * have passed some {@code milliseconds}, unless it is cancelled before.
+     * <p>
+     * Unlike {@link #schedule(Procedure, long)}, the block is registered in a
+     * hashed timer wheel, so registering and cancelling are constant time
+     * operations, at the cost of a resolution of 10ms. Use it for timeouts
+     * and retries, which usually are cancelled before they expire.
+     * @param block block of code
+     * @param milliseconds milliseconds of delay to execute the code
+     * @return a {@link Timeout} to cancel the execution of the code
+     * @throws IllegalStateException if the service is stopped
+     */
+    public @NotNull Timeout timeout(final @NotNull Procedure block, long milliseconds) {
+        if(stopped.get()) throw new IllegalStateException("The service is stopped");
+        WheelTimeout timeout = new WheelTimeout(group, block);
+        timeout.handle = timer.newTimeout(timeout, milliseconds, TimeUnit.MILLISECONDS);
+        if(timeout.isCancelled()) timeout.handle.cancel();
+        return timeout;
+    }
+
+    /**
+     * @return the metrics of this service and all its sockets and acceptors
+     */
+    public @NotNull IOServiceMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the percentage of the time that the event loops spend doing I/O with
+     * respect to the time executing tasks. By default is 50. With 100, the loops
+     * don't balance them and run all the pending tasks after every I/O.
+     * @param ioRatio the percentage, between 1 and 100
+     */
+    public void setIoRatio(int ioRatio) {
+        ((NioEventLoopGroup) group).setIoRatio(ioRatio);
+    }
+
+    /**
+     * <p>Starts measuring the lag of every event loop: every {@code periodMillis}, a
+     * probe task is sent to every loop, and the time it waits to be executed is recorded
+     * in {@link EventLoopMetrics#lag()}. The probes are sent from the timer thread, so
+     * they work even if all the event loops are blocked.</p>
+     * <p>If a probe waits more than {@code thresholdMillis}, {@code onLag} is called once
+     * for it from the timer thread, while the loop is still blocked. This allows to find
+     * who is blocking the loop, for example by logging the stack trace of
+     * {@link EventLoopMetrics#thread()}. The listener must not block.</p>
+     * @param periodMillis milliseconds between probes, or 0 to stop the probe
+     * @param thresholdMillis lag in milliseconds to consider a loop blocked
+     * @param onLag listener for blocked loops, or null
+     */
+    public synchronized void setLagProbe(long periodMillis, long thresholdMillis, @Nullable Callback<EventLoopMetrics> onLag) {
+        if(periodMillis < 0 || thresholdMillis < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        if(lagProbe != null) lagProbe.stopped = true;
+        lagProbe = null;
+        if(periodMillis != 0) {
+            lagProbe = new LagProbe(periodMillis, TimeUnit.MILLISECONDS.toNanos(thresholdMillis), onLag);
+            timer.newTimeout(lagProbe, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Detects blocking operations called from the event loop threads of this service,
+     * checking every one of them.
+     * @param detection what to do when one is detected
+     * @see #setBlockingDetection(BlockingDetection, int)
+     */
+    public void setBlockingDetection(@NotNull BlockingDetection detection) {
+        setBlockingDetection(detection, 1);
+    }
+
+    /**
+     * <p>Detects blocking operations (waiting for a {@link Future}, the synchronous
+     * methods of the sockets...) called from the event loop threads of this service,
+     * which stall every socket of the loop or even deadlock. By default they are
+     * ignored.</p>
+     * <p>Only operations that really have to wait are checked. With a {@code sampling}
+     * greater than 1, only one of every {@code sampling} of them (randomly) is, so
+     * the detection is cheap enough to be left enabled in production. Operations
+     * detected are counted in {@link IOServiceMetrics#blockingCalls()}.</p>
+     * @param detection what to do when one is detected
+     * @param sampling check one of every {@code sampling} operations
+     */
+    public void setBlockingDetection(@NotNull BlockingDetection detection, int sampling) {
+        if(sampling < 1) throw new IllegalArgumentException("Sampling must be 1 or greater");
+        this.blockingSampling = sampling;
+        this.blockingDetection = detection;
+    }
+
+    /**
+     * Must be called before a blocking operation is going to wait. If the current
+     * thread is an event loop thread, the operation is checked as configured in
+     * its {@link IOService}.
+     * @throws BlockingOperationException if the {@link IOService} is configured to fail
+     */
+    static void checkBlockingCall() {
+        //Only the event loop threads have the service set
+        if(!(Thread.currentThread() instanceof FastThreadLocalThread)) return;
+        IOService service = current.get();
+        if(service == null) return;
+
+        BlockingDetection detection = service.blockingDetection;
+        if(detection == BlockingDetection.IGNORE) return;
+        int sampling = service.blockingSampling;
+        if(sampling > 1 && ThreadLocalRandom.current().nextInt(sampling) != 0) return;
+
+        service.metrics.blockingCalls.increment();
+        BlockingOperationException e = new BlockingOperationException("Blocking operation called in the event loop thread " +
+                Thread.currentThread().getName());
+        if(detection == BlockingDetection.FAIL) throw e;
+        e.printStackTrace();
+    }
+
+    /**
+     * @return the event loop of this service which is running in the current
+     * thread, or null if the current thread is not one of them
+     */
+    @Nullable EventLoop currentEventLoop() {
+        for(EventExecutor loop : group) {
+            if(loop.inEventLoop()) return (EventLoop) loop;
+        }
+        return null;
     }
 
     /**
      * Stops the event loop
      */
     public void cancel() {
+        releaseTimer();
         if(!group.isShutdown()) {
-            group.shutdownGracefully().syncUninterruptibly();
+            Blocking.sync(group.shutdownGracefully());
         }
     }
 
@@ -93,9 +287,192 @@ public class IOService {
      * @return {@link Future} or null if is cancelled already
      */
     public @Nullable Future<?> cancelAsync() {
+        releaseTimer();
         if(!group.isShutdown()) {
             return new NettyFuture<>(group.shutdownGracefully(), this);
         }
         return null;
     }
+
+    private static HashedWheelTimer acquireTimer() {
+        synchronized(timerLock) {
+            //Netty warns with more than 64 timers, and every one of them has a thread
+            if(sharedTimer == null) {
+                sharedTimerThreads = new TimerThreadFactory();
+                sharedTimer = new HashedWheelTimer(sharedTimerThreads, 10, TimeUnit.MILLISECONDS, 512);
+            }
+            timerUsers++;
+            return sharedTimer;
+        }
+    }
+
+    private void releaseTimer() {
+        if(!stopped.compareAndSet(false, true)) return;
+        synchronized(this) {
+            if(lagProbe != null) lagProbe.stopped = true;
+            lagProbe = null;
+        }
+        //The pending timeouts of this service do nothing when they expire, as the group is shut down
+        synchronized(timerLock) {
+            if(--timerUsers == 0) {
+                final HashedWheelTimer timer = sharedTimer;
+                if(Thread.currentThread() == sharedTimerThreads.thread) {
+                    //Cancelled from a timer task (as the onLag listener), which cannot stop its own timer
+                    new DefaultThreadFactory("ioServiceTimerStop", true).newThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            timer.stop();
+                        }
+                    }).start();
+                } else {
+                    timer.stop();
+                }
+                sharedTimer = null;
+                sharedTimerThreads = null;
+            }
+        }
+    }
+
+    private static final class WheelTimeout implements Timeout, TimerTask, Runnable {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+        private final EventLoopGroup group;
+        private final Procedure block;
+        private volatile int state = PENDING;
+        private volatile io.netty.util.Timeout handle;
+
+        private WheelTimeout(EventLoopGroup group, Procedure block) {
+            this.group = group;
+            this.block = block;
+        }
+
+        @Override
+        public boolean cancel() {
+            if(!STATE.compareAndSet(this, PENDING, CANCELLED)) return false;
+            io.netty.util.Timeout handle = this.handle;
+            if(handle != null) handle.cancel();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return state == EXPIRED;
+        }
+
+        @Override
+        public void run(io.netty.util.Timeout timeout) {
+            //The timer thread only moves the block to the event loop, the code never runs in it
+            if(state != PENDING || group.isShuttingDown()) return;
+            try {
+                group.execute(this);
+            } catch(RejectedExecutionException ignore) {
+                //The service is stopping
+            }
+        }
+
+        @Override
+        public void run() {
+            if(STATE.compareAndSet(this, PENDING, EXPIRED)) block.call();
+        }
+    }
+
+    private final class MeasuredTask implements Runnable {
+        private final Procedure block;
+        private final EventLoopMetrics loopMetrics;
+        private final long runTime;
+        private final boolean pending;
+
+        private MeasuredTask(Procedure block, EventLoopMetrics loopMetrics, long runTime, boolean pending) {
+            this.block = block;
+            this.loopMetrics = loopMetrics;
+            this.runTime = runTime;
+            this.pending = pending;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            metrics.taskLatency.record(start - runTime);
+            loopMetrics.taskQueueWait.record(start - runTime);
+            try {
+                block.call();
+            } finally {
+                loopMetrics.taskTime.record(System.nanoTime() - start);
+                if(pending) loopMetrics.pendingTasks.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remembers the thread of the shared timer, to know when it is the one stopping it
+     */
+    private static final class TimerThreadFactory extends DefaultThreadFactory {
+        private volatile Thread thread;
+
+        private TimerThreadFactory() {
+            super("ioServiceTimer", true);
+        }
+
+        @Override
+        protected Thread newThread(Runnable r, String name) {
+            return thread = super.newThread(r, name);
+        }
+    }
+
+    private final class LagProbe implements TimerTask {
+        private final long period;
+        private final long threshold;
+        private final Callback<EventLoopMetrics> onLag;
+        private volatile boolean stopped;
+
+        private LagProbe(long period, long threshold, Callback<EventLoopMetrics> onLag) {
+            this.period = period;
+            this.threshold = threshold;
+            this.onLag = onLag;
+        }
+
+        @Override
+        public void run(io.netty.util.Timeout timeout) {
+            if(stopped || group.isShuttingDown()) return;
+            for(final EventLoopMetrics loop : metrics.eventLoops()) {
+                long probeTime = loop.probeTime;
+                if(probeTime != 0) {
+                    //The last probe is still waiting
+                    if(onLag != null && !loop.lagReported && System.nanoTime() - probeTime >= threshold) {
+                        loop.lagReported = true;
+                        try {
+                            onLag.call(loop);
+                        } catch(Throwable ignore) {}
+                    }
+                    continue;
+                }
+
+                loop.probeTime = System.nanoTime();
+                try {
+                    loop.executor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            loop.lag.record(System.nanoTime() - loop.probeTime);
+                            loop.thread = Thread.currentThread();
+                            loop.lagReported = false;
+                            loop.probeTime = 0;
+                        }
+                    });
+                } catch(RejectedExecutionException e) {
+                    return;
+                }
+            }
+            //The listener could have cancelled the service
+            if(!stopped) timer.newTimeout(this, period, TimeUnit.MILLISECONDS);
+        }
+    }
 }
@@ -0,0 +1,152 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of an {@link IOService}, that is, the sum of the metrics of all its
+ * {@link Socket}{@code s} and {@link Acceptor}{@code s}, and the latency of the
+ * tasks executed in its event loops. Latencies are in nanoseconds.
+ * @see IOService#metrics()
+ */
+public final class IOServiceMetrics {
+    final Counter bytesReceived = new Counter();
+    final Counter bytesSent = new Counter();
+    final Counter messagesReceived = new Counter();
+    final Counter messagesSent = new Counter();
+    final Counter discardedBytes = new Counter();
+    final Counter acceptedConnections = new Counter();
+    final Counter rejectedConnections = new Counter();
+    final Counter blockingCalls = new Counter();
+    final Histogram receiveLatency = new Histogram();
+    final Histogram sendLatency = new Histogram();
+    final Histogram taskLatency = new Histogram();
+    private final List<EventLoopMetrics> eventLoops;
+    private final Map<EventExecutor, EventLoopMetrics> eventLoopsByExecutor;
+
+    IOServiceMetrics(@NotNull EventLoopGroup group) {
+        List<EventLoopMetrics> eventLoops = new ArrayList<>();
+        eventLoopsByExecutor = new IdentityHashMap<>();
+        for(EventExecutor loop : group) {
+            EventLoopMetrics metrics = new EventLoopMetrics(loop);
+            eventLoops.add(metrics);
+            eventLoopsByExecutor.put(loop, metrics);
+        }
+        this.eventLoops = Collections.unmodifiableList(eventLoops);
+    }
+
+    /**
+     * @return bytes received by all sockets
+     */
+    public @NotNull Counter bytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return bytes sent by all sockets
+     */
+    public @NotNull Counter bytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return reads (TCP) or datagrams (UDP) received by all sockets
+     */
+    public @NotNull Counter messagesReceived() {
+        return messagesReceived;
+    }
+
+    /**
+     * @return send operations done by all sockets
+     */
+    public @NotNull Counter messagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * @return received bytes discarded by all sockets, because there was no space to store them
+     */
+    public @NotNull Counter discardedBytes() {
+        return discardedBytes;
+    }
+
+    /**
+     * @return connections accepted by all acceptors
+     */
+    public @NotNull Counter acceptedConnections() {
+        return acceptedConnections;
+    }
+
+    /**
+     * @return connections rejected by the admission limits of all acceptors
+     */
+    public @NotNull Counter rejectedConnections() {
+        return rejectedConnections;
+    }
+
+    /**
+     * @return blocking operations detected in the event loops
+     * @see IOService#setBlockingDetection(BlockingDetection, int)
+     */
+    public @NotNull Counter blockingCalls() {
+        return blockingCalls;
+    }
+
+    /**
+     * @return time since a receive operation is requested until it gets the data
+     */
+    public @NotNull Histogram receiveLatency() {
+        return receiveLatency;
+    }
+
+    /**
+     * @return time since a send operation is requested until it is written to the network
+     */
+    public @NotNull Histogram sendLatency() {
+        return sendLatency;
+    }
+
+    /**
+     * @return time that the blocks of code from {@link IOService#post(Procedure)} and
+     * {@link IOService#schedule(Procedure, long)} have waited to be executed after
+     * they should have been
+     */
+    public @NotNull Histogram taskLatency() {
+        return taskLatency;
+    }
+
+    /**
+     * @return the metrics of every event loop of the service
+     */
+    public @NotNull List<EventLoopMetrics> eventLoops() {
+        return eventLoops;
+    }
+
+    EventLoopMetrics of(EventExecutor loop) {
+        return eventLoopsByExecutor.get(loop);
+    }
+}
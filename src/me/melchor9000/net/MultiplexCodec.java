@@ -0,0 +1,61 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Encodes the requests and decodes the responses of a {@link MultiplexedClient}.
+ * Every request has an identifier, given by the client, that the protocol must
+ * send with the request and get back in its response, so the responses can be
+ * matched with their requests even if they arrive in other order.
+ * <p>
+ * The methods are called from the event loop of the socket.
+ * @param <RequestType> type of the requests
+ * @param <ResponseType> type of the responses
+ */
+public interface MultiplexCodec<RequestType, ResponseType> {
+
+    /**
+     * Writes the {@code request} into {@code out}, with its identifier.
+     * @param request the request
+     * @param id identifier of the request
+     * @param out buffer where to write the request
+     * @throws Exception if the request cannot be encoded
+     */
+    void encode(@NotNull RequestType request, int id, @NotNull ByteBuf out) throws Exception;
+
+    /**
+     * Reads one response from {@code in}. If there is not a whole response in the
+     * buffer, returns null without consuming anything, and will be called again
+     * when more data is received.
+     * @param in buffer with the received data
+     * @return a response, or null if there's not enough data
+     * @throws Exception if the data received is not valid; the connection is closed
+     */
+    @Nullable ResponseType decode(@NotNull ByteBuf in) throws Exception;
+
+    /**
+     * @param response a decoded response
+     * @return the identifier of the request of this {@code response}
+     */
+    int correlationId(@NotNull ResponseType response);
+}
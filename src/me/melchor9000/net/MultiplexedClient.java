@@ -0,0 +1,315 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.collection.IntObjectHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ *     A client that sends many requests through the same {@link TCPSocket} without
+ *     waiting for the responses of the before ones. Every request gets an identifier
+ *     that the {@link MultiplexCodec} sends with it, and the response is given to the
+ *     request with the same identifier, so the server can respond in any order.
+ * </p>
+ * <p>
+ *     The requests waiting for a response are kept in a table indexed by the
+ *     identifier, only used from the event loop of the socket, so there is no locking.
+ *     The requests sent at the same time are flushed together. Every request can have a
+ *     timeout, registered in the timer of the {@link IOService}; a response that arrives
+ *     after the timeout is discarded.
+ * </p>
+ * <p>
+ *     After creating the client, the data received by the socket is only seen by the
+ *     client: the receive methods of the socket must not be used.
+ * </p>
+ * @param <RequestType> type of the requests
+ * @param <ResponseType> type of the responses
+ */
+public class MultiplexedClient<RequestType, ResponseType> implements AutoCloseable {
+    private final TCPSocket socket;
+    private final MultiplexCodec<RequestType, ResponseType> codec;
+    private final EventLoop loop;
+    private final IntObjectHashMap<Request> pending = new IntObjectHashMap<>();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled = false;
+            socket.socket.flush();
+        }
+    };
+    private volatile long defaultTimeout;
+    private volatile int pendingRequests;
+    private int nextId;
+    private boolean flushScheduled;
+    private Throwable closeCause;
+
+    /**
+     * Creates a client that uses the connected {@code socket}
+     * @param socket a connected socket
+     * @param codec the codec of the protocol
+     * @throws IllegalStateException if the socket has receive operations pending
+     */
+    public MultiplexedClient(@NotNull TCPSocket socket, @NotNull MultiplexCodec<RequestType, ResponseType> codec) {
+        socket.checkSocketCreated("MultiplexedClient");
+        if(socket.pendingReceives() != 0) throw new IllegalStateException("There are receive operations pending");
+        this.socket = socket;
+        this.codec = codec;
+        this.loop = socket.socket.eventLoop();
+        socket.socket.pipeline().addBefore("readManager", "multiplexer", new ResponseDecoder());
+        socket.socket.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                failAll(new ClosedChannelException());
+            }
+        });
+    }
+
+    /**
+     * Sets the timeout for the requests sent with {@link #requestAsync(Object)}.
+     * @param milliseconds timeout, or 0 to disable it
+     */
+    public void setDefaultTimeout(long milliseconds) {
+        if(milliseconds < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        defaultTimeout = milliseconds;
+    }
+
+    /**
+     * @return the timeout for the requests, or 0 if disabled
+     */
+    public long getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * @return the number of requests waiting for a response
+     */
+    public int pendingRequests() {
+        return pendingRequests;
+    }
+
+    /**
+     * @return the socket of the client
+     */
+    public @NotNull TCPSocket socket() {
+        return socket;
+    }
+
+    /**
+     * Sends the {@code request} and waits for its response.
+     * @param request the request
+     * @return the response
+     * @throws ExecutionException if the request fails or times out
+     * @throws InterruptedException if it is interrupted
+     */
+    public ResponseType request(@NotNull RequestType request) throws ExecutionException, InterruptedException {
+        return requestAsync(request).getValue();
+    }
+
+    /**
+     * Sends the {@code request}, with the default timeout.
+     * See {@link #requestAsync(Object, long)}.
+     * @param request the request
+     * @return a {@link Future} with the response
+     */
+    public @NotNull Future<ResponseType> requestAsync(@NotNull RequestType request) {
+        return requestAsync(request, defaultTimeout);
+    }
+
+    /**
+     * Sends the {@code request} and returns a {@link Future} with its response. If
+     * the response does not arrive in {@code timeout} milliseconds, it fails with a
+     * {@link TimeoutException}. If the connection is closed, all requests waiting
+     * fail with a {@link ClosedChannelException}. Cancelling the task forgets
+     * the request, but it is sent anyway if it was not.
+     * @param request the request
+     * @param timeout milliseconds to wait for the response, or 0 to wait forever
+     * @return a {@link Future} with the response
+     */
+    public @NotNull Future<ResponseType> requestAsync(@NotNull RequestType request, long timeout) {
+        if(timeout < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        final Request r = new Request(request, timeout);
+        if(loop.inEventLoop()) {
+            r.run();
+        } else {
+            loop.execute(r);
+        }
+        return r.future;
+    }
+
+    /**
+     * Closes the socket. Pending requests fail.
+     */
+    @Override
+    public void close() {
+        socket.close();
+    }
+
+    /**
+     * Closes the socket asynchronously. Pending requests fail.
+     * @return a {@link Future} for the close task
+     */
+    public @NotNull Future<Void> closeAsync() {
+        return socket.closeAsync();
+    }
+
+    private void remove(Request r) {
+        if(pending.get(r.id) == r) {
+            pending.remove(r.id);
+            pendingRequests = pending.size();
+        }
+    }
+
+    private void failAll(Throwable cause) {
+        if(closeCause == null) closeCause = cause;
+        List<Request> requests = new ArrayList<>(pending.values());
+        pending.clear();
+        pendingRequests = 0;
+        for(Request r : requests) {
+            if(r.timeout != null) r.timeout.cancel();
+            r.future.tryError(cause);
+        }
+    }
+
+    private class Request implements Runnable {
+        private final RequestType request;
+        private final long timeoutMillis;
+        private final FutureImpl<ResponseType> future;
+        private final long startTime = System.nanoTime();
+        private int id;
+        private Timeout timeout;
+
+        private Request(RequestType request, long timeoutMillis) {
+            this.request = request;
+            this.timeoutMillis = timeoutMillis;
+            this.future = new FutureImpl<>(socket.service, new Procedure() {
+                @Override
+                public void call() {
+                    forget();
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            if(future.isDone()) return;
+            if(closeCause != null || !socket.socket.isActive()) {
+                future.tryError(closeCause != null ? closeCause : new ClosedChannelException());
+                return;
+            }
+
+            final ByteBuf buff = socket.socket.alloc().buffer();
+            try {
+                do { id = nextId++; } while(pending.containsKey(id));
+                codec.encode(request, id, buff);
+            } catch(Throwable e) {
+                buff.release();
+                future.tryError(e);
+                return;
+            }
+
+            pending.put(id, this);
+            pendingRequests = pending.size();
+            if(timeoutMillis > 0) {
+                timeout = socket.service.timeout(new Procedure() {
+                    @Override
+                    public void call() {
+                        if(future.tryError(new TimeoutException("No response in " + timeoutMillis + "ms"))) forget();
+                    }
+                }, timeoutMillis);
+            }
+
+            final int bytes = buff.readableBytes();
+            socket.socket.write(buff).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture f) throws Exception {
+                    if(f.isSuccess()) {
+                        socket.metrics.sent(bytes, startTime);
+                    } else {
+                        remove(Request.this);
+                        if(timeout != null) timeout.cancel();
+                        future.tryError(f.cause());
+                    }
+                }
+            });
+            if(!flushScheduled) {
+                flushScheduled = true;
+                loop.execute(flushTask);
+            }
+        }
+
+        private void forget() {
+            if(timeout != null) timeout.cancel();
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    remove(Request.this);
+                }
+            });
+        }
+    }
+
+    private class ResponseDecoder extends ByteToMessageDecoder {
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            super.handlerAdded(ctx);
+            //Data received before the client was created
+            ByteBuf data = socket.takeReceivedData();
+            if(data != null) channelRead(ctx, data);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if(msg instanceof ByteBuf) socket.metrics.received(((ByteBuf) msg).readableBytes());
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            ResponseType response;
+            while(in.isReadable() && (response = codec.decode(in)) != null) {
+                Request r = pending.remove(codec.correlationId(response));
+                if(r == null) continue; //Timed out or cancelled
+                pendingRequests = pending.size();
+                if(r.timeout != null) r.timeout.cancel();
+                socket.metrics.receiveDone(r.startTime);
+                r.future.trySuccess(response);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            //The protocol is in an unknown state
+            failAll(cause);
+            ctx.close();
+        }
+    }
+}
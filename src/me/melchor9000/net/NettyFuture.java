@@ -23,7 +23,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -33,7 +32,7 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
     private final io.netty.util.concurrent.Future<ReturnType> future;
     private final IOService service;
     private final Procedure whenCancelled;
-    private Future<?> timeoutFuture;
+    private Timeout timeout;
 
     NettyFuture(@NotNull io.netty.util.concurrent.Future<ReturnType> future, @NotNull IOService service, @Nullable Procedure whenCancelled) {
         this.future = future;
@@ -42,7 +41,7 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
         future.addListener(new GenericFutureListener<io.netty.util.concurrent.Future<? super ReturnType>>() {
             @Override
             public void operationComplete(io.netty.util.concurrent.Future<? super ReturnType> future) throws Exception {
-                if(timeoutFuture != null) timeoutFuture.cancel(false);
+                if(timeout != null) timeout.cancel();
             }
         });
     }
@@ -96,8 +95,8 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
         if(milliseconds <= 0) throw new IllegalArgumentException("Only positive non 0 values are accepted");
         if(isDone()) throw new IllegalStateException("The task is done");
         if(!isCancelable()) throw new IllegalStateException("The task is not cancellable");
-        if(timeoutFuture != null) timeoutFuture.cancel(false);
-        timeoutFuture = service.schedule(new Procedure() {
+        if(timeout != null) timeout.cancel();
+        timeout = service.timeout(new Procedure() {
             @Override
             public void call() {
                 if(!isDone()) {
@@ -109,6 +108,24 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
         return this;
     }
 
+    @NotNull
+    @Override
+    public <T> Future<T> map(@NotNull Transformer<ReturnType, T> transformer) {
+        return new Futures.MappedFuture<>(service, this, transformer);
+    }
+
+    @NotNull
+    @Override
+    public <T> Future<T> thenCompose(@NotNull Transformer<ReturnType, Future<T>> transformer) {
+        return new Futures.ComposedFuture<>(service, this, transformer);
+    }
+
+    @NotNull
+    @Override
+    public Future<ReturnType> withTimeout(long milliseconds) {
+        return new Futures.TimeoutFuture<>(service, this, milliseconds);
+    }
+
     public ReturnType getValueNow() {
         return future.getNow();
     }
@@ -118,7 +135,7 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
     }
 
     public ReturnType getValue(long millis) throws InterruptedException, ExecutionException, TimeoutException {
-        return future.get(millis, TimeUnit.MILLISECONDS);
+        return Blocking.get(future, millis);
     }
 
     public ReturnType getValueUninterrumptibly(long millis) throws ExecutionException, TimeoutException {
@@ -135,22 +152,18 @@ class NettyFuture<ReturnType> implements Future<ReturnType> {
     }
 
     public ReturnType getValue() throws ExecutionException, InterruptedException {
-        return future.get();
+        Blocking.awaitInterruptibly(future);
+        return Blocking.getNow(future);
     }
 
     public ReturnType getValueUninterrumptibly() throws ExecutionException, InterruptedException {
-        ReturnType ret = null;
-        while(!isDone()) {
-            try {
-                ret = getValue();
-            } catch(InterruptedException ignore) {}
-        }
-        return ret;
+        Blocking.await(future);
+        return Blocking.getNow(future);
     }
 
     @NotNull
     public Future<ReturnType> sync() {
-        future.syncUninterruptibly();
+        Blocking.sync(future);
         return this;
     }
 }
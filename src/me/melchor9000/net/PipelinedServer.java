@@ -0,0 +1,318 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>
+ *     A server for request/response protocols on top of a {@link TCPAcceptor} (or a
+ *     {@link SSLAcceptor}). Every connection decodes the requests with a
+ *     {@link ServerCodec} as the data is received, and gives them to a
+ *     {@link RequestHandler}. The responses are written in the same order as their
+ *     requests, even if some are ready before others, and are flushed together
+ *     when all the received data has been processed, instead of once per response.
+ * </p>
+ * <p>
+ *     The handler runs in the event loop of the connection, so it must not block.
+ *     If it needs to, an {@link Executor} can be given with {@link #setExecutor(Executor)}
+ *     and the requests are served there. A connection can have
+ *     {@link #setMaxPipelinedRequests(int) some requests} being served at the same
+ *     time; when there are more, the connection stops reading until some responses
+ *     are written.
+ * </p>
+ * <p>
+ *     The server uses the connection listener of the acceptor, so the {@code accept}
+ *     methods must not be used. If the codec or the handler fail, the connection is
+ *     closed.
+ * </p>
+ * @param <RequestType> type of the requests
+ * @param <ResponseType> type of the responses
+ */
+public class PipelinedServer<RequestType, ResponseType> implements AutoCloseable {
+    private final TCPAcceptor acceptor;
+    private final ServerCodec<RequestType, ResponseType> codec;
+    private final RequestHandler<RequestType, ResponseType> handler;
+    private volatile Executor executor;
+    private volatile int maxPipelinedRequests = 256;
+
+    /**
+     * Creates the server and starts serving the connections of the {@code acceptor}.
+     * @param acceptor the acceptor, bound or not
+     * @param codec the codec of the protocol
+     * @param handler the handler of the requests
+     */
+    public PipelinedServer(@NotNull TCPAcceptor acceptor,
+                           @NotNull ServerCodec<RequestType, ResponseType> codec,
+                           @NotNull RequestHandler<RequestType, ResponseType> handler) {
+        this.acceptor = acceptor;
+        this.codec = codec;
+        this.handler = handler;
+        acceptor.setOnConnectionListener(new Callback<TCPSocket>() {
+            @Override
+            public void call(TCPSocket socket) {
+                socket.socket.pipeline().addBefore("readManager", "server", new Connection(socket));
+            }
+        });
+    }
+
+    /**
+     * Serves the requests in tasks of the {@code executor} instead of the event
+     * loop of the connection. Affects the requests received after the call.
+     * @param executor the executor, or null to serve in the event loop
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets how many requests of a connection can be served at the same time, or
+     * have a response waiting for a previous one. When reached, no more data is
+     * read from the connection until some responses are written. By default, 256.
+     * @param maxPipelinedRequests the limit
+     */
+    public void setMaxPipelinedRequests(int maxPipelinedRequests) {
+        if(maxPipelinedRequests <= 0) throw new IllegalArgumentException("maxPipelinedRequests must be positive");
+        this.maxPipelinedRequests = maxPipelinedRequests;
+    }
+
+    /**
+     * @return the acceptor of the server
+     */
+    public @NotNull TCPAcceptor acceptor() {
+        return acceptor;
+    }
+
+    /**
+     * Closes the acceptor. The connections are not closed.
+     * @throws Exception if something bad happened
+     */
+    @Override
+    public void close() throws Exception {
+        acceptor.close();
+    }
+
+    /**
+     * A request being served, or with its response waiting to be written.
+     */
+    private class Slot {
+        private final long startTime = System.nanoTime();
+        private boolean done;
+        private ResponseType response;
+        private Throwable error;
+    }
+
+    private class Connection extends ByteToMessageDecoder {
+        private final TCPSocket socket;
+        private final ArrayDeque<Slot> slots = new ArrayDeque<>();
+        private ChannelHandlerContext ctx;
+        private boolean written, flushScheduled, paused, failed, decoding;
+        private final Runnable flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushScheduled = false;
+                flushIfWritten();
+            }
+        };
+
+        private Connection(TCPSocket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+            this.ctx = ctx;
+            super.handlerAdded(ctx);
+            //Data received before the server was ready
+            ByteBuf data = socket.takeReceivedData();
+            if(data != null) {
+                channelRead(ctx, data);
+                flushIfWritten();
+            }
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            if(msg instanceof ByteBuf) socket.metrics.received(((ByteBuf) msg).readableBytes());
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+            RequestType request;
+            decoding = true;
+            try {
+                //When paused, the rest of the data waits in the buffer until some responses are written
+                while(!failed && !paused && in.isReadable() && (request = codec.decode(in)) != null) {
+                    Slot slot = new Slot();
+                    slots.add(slot);
+                    Executor executor = PipelinedServer.this.executor;
+                    if(executor == null) {
+                        slot.response = handler.handle(socket, request);
+                        slot.done = true;
+                        writeReady();
+                    } else {
+                        serve(executor, slot, request);
+                    }
+
+                    if(!paused && slots.size() >= maxPipelinedRequests) {
+                        paused = true;
+                        ctx.channel().config().setAutoRead(false);
+                    }
+                }
+            } finally {
+                decoding = false;
+            }
+        }
+
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            flushIfWritten();
+            if(paused) {
+                //The decoder would ask for another read if nothing was decoded, ignoring the pause
+                ctx.fireChannelReadComplete();
+            } else {
+                super.channelReadComplete(ctx);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+            fail(cause instanceof DecoderException && cause.getCause() != null ? cause.getCause() : cause);
+        }
+
+        private void serve(Executor executor, final Slot slot, final RequestType request) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            slot.response = handler.handle(socket, request);
+                        } catch(Throwable e) {
+                            slot.error = e;
+                        }
+
+                        ctx.executor().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                slot.done = true;
+                                writeReady();
+                                if(written && !flushScheduled) {
+                                    flushScheduled = true;
+                                    ctx.executor().execute(flushTask);
+                                }
+                            }
+                        });
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                slot.error = e;
+                slot.done = true;
+                writeReady();
+            }
+        }
+
+        /**
+         * Writes the responses that are ready, in order, until one that is not.
+         */
+        private void writeReady() {
+            Slot slot;
+            while(!failed && (slot = slots.peek()) != null && slot.done) {
+                slots.poll();
+                if(slot.error != null) {
+                    fail(slot.error);
+                    return;
+                }
+                if(slot.response != null) write(slot);
+            }
+
+            if(paused && slots.size() < maxPipelinedRequests) {
+                paused = false;
+                ctx.channel().config().setAutoRead(true);
+                if(!decoding) resumeDecoding();
+            }
+        }
+
+        /**
+         * Decodes the requests received while the connection was paused.
+         */
+        private void resumeDecoding() {
+            ByteBuf received = internalBuffer();
+            if(!received.isReadable()) return;
+            try {
+                callDecode(ctx, received, new ArrayList<Object>());
+            } catch(Throwable e) {
+                fail(e instanceof DecoderException && e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        private void write(final Slot slot) {
+            ByteBuf buff = ctx.alloc().buffer();
+            try {
+                codec.encode(slot.response, buff);
+            } catch(Throwable e) {
+                buff.release();
+                fail(e);
+                return;
+            }
+
+            final int bytes = buff.readableBytes();
+            ctx.write(buff).addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if(future.isSuccess()) socket.metrics.sent(bytes, slot.startTime);
+                    else future.channel().close();
+                }
+            });
+            written = true;
+        }
+
+        private void flushIfWritten() {
+            if(written) {
+                written = false;
+                ctx.flush();
+            }
+        }
+
+        private void fail(Throwable cause) {
+            if(failed) return;
+            failed = true;
+            slots.clear();
+            if(ctx.channel().isActive()) {
+                System.err.println("Caught a Throwable while serving a connection, closing it");
+                cause.printStackTrace();
+            }
+            flushIfWritten();
+            ctx.close();
+        }
+    }
+}
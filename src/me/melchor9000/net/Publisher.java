@@ -0,0 +1,46 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * <p>
+ *     A producer of items that will be received by one {@link Subscriber}, with
+ *     demand based backpressure. Follows the same contract as the
+ *     <a href="http://www.reactive-streams.org/">Reactive Streams</a> specification
+ *     (and {@code java.util.concurrent.Flow} from Java 9), but it is defined here
+ *     because the library targets Java 7 and Android.
+ * </p>
+ * <p>
+ *     A publisher only sends to its subscriber as many items as the subscriber
+ *     requested through its {@link Subscription}.
+ * </p>
+ * @param <T> type of the items
+ */
+public interface Publisher<T> {
+
+    /**
+     * Adds the subscriber to this publisher. If the publisher already has
+     * a subscriber, {@link Subscriber#onError(Throwable)} is called with an
+     * {@link IllegalStateException}.
+     * @param subscriber the subscriber
+     */
+    void subscribe(@NotNull Subscriber<? super T> subscriber);
+}
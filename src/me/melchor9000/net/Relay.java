@@ -0,0 +1,149 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.socket.SocketChannel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A relay between two {@link TCPSocket}, that forwards everything received in one
+ * socket to the other one. The buffers read from a socket are written as they are
+ * in the other one, without copying them. When the socket that sends cannot keep
+ * up, the reads in the other socket are paused until it can send again, so the
+ * memory used is bounded by the write buffer water marks of the sockets.
+ * <p>
+ * When one socket is closed, the other one is closed after sending the data that
+ * was pending. Then the relay is done.
+ * @see SocketUtil#relay(TCPSocket, TCPSocket)
+ */
+public final class Relay {
+    private final TCPSocket first;
+    private final TCPSocket second;
+    private final Counter bytesFromFirst = new Counter();
+    private final Counter bytesFromSecond = new Counter();
+    private final AtomicInteger openSockets = new AtomicInteger(2);
+    private final FutureImpl<Void> done;
+
+    Relay(@NotNull TCPSocket first, @NotNull TCPSocket second) {
+        this.first = first;
+        this.second = second;
+        this.done = new FutureImpl<>(first.service, null);
+    }
+
+    /**
+     * @return the first socket
+     */
+    public @NotNull TCPSocket first() {
+        return first;
+    }
+
+    /**
+     * @return the second socket
+     */
+    public @NotNull TCPSocket second() {
+        return second;
+    }
+
+    /**
+     * @return bytes received from the first socket and sent through the second
+     */
+    public @NotNull Counter bytesFromFirst() {
+        return bytesFromFirst;
+    }
+
+    /**
+     * @return bytes received from the second socket and sent through the first
+     */
+    public @NotNull Counter bytesFromSecond() {
+        return bytesFromSecond;
+    }
+
+    /**
+     * Returns a {@link Future} that completes when both sockets are closed.
+     * @return a {@link Future} for the relay
+     */
+    public @NotNull Future<Void> onDone() {
+        return done;
+    }
+
+    /**
+     * Closes both sockets, ending the relay.
+     * @return a {@link Future} that completes when the relay is done
+     */
+    public @NotNull Future<Void> closeAsync() {
+        first.socket.close();
+        second.socket.close();
+        return done;
+    }
+
+    void start() {
+        first.startRelay(this);
+        second.startRelay(this);
+    }
+
+    /**
+     * Called from the event loop of {@code from}, forwards the received data to the
+     * other socket. The buffer is released by the other socket when it is sent.
+     */
+    void forward(TCPSocket from, ByteBuf data) {
+        SocketChannel source = from.socket;
+        SocketChannel target = peerOf(from).socket;
+        (from == first ? bytesFromFirst : bytesFromSecond).add(data.readableBytes());
+        target.write(data).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        if(!target.isWritable()) {
+            source.config().setAutoRead(false);
+            //The target could have been drained before the last line
+            if(target.isWritable()) source.config().setAutoRead(true);
+        }
+    }
+
+    /**
+     * Called from the event loop of {@code from}, when all the data received in
+     * one read is forwarded.
+     */
+    void flush(TCPSocket from) {
+        peerOf(from).socket.flush();
+    }
+
+    /**
+     * Called from the event loop of {@code socket}, when it can send again, to
+     * resume the reads in the other socket.
+     */
+    void writable(TCPSocket socket) {
+        peerOf(socket).socket.config().setAutoRead(true);
+    }
+
+    /**
+     * Called from the event loop of {@code socket}, when it is closed.
+     */
+    void closed(TCPSocket socket) {
+        SocketChannel peer = peerOf(socket).socket;
+        if(peer.isActive()) peer.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        if(openSockets.decrementAndGet() == 0) done.trySuccess(null);
+    }
+
+    private TCPSocket peerOf(TCPSocket socket) {
+        return socket == first ? second : first;
+    }
+}
@@ -0,0 +1,40 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Serves the requests of a {@link PipelinedServer}.
+ * @param <RequestType> type of the requests
+ * @param <ResponseType> type of the responses
+ */
+public interface RequestHandler<RequestType, ResponseType> {
+
+    /**
+     * Serves a request. Runs in the event loop of the connection, unless the
+     * server has an executor.
+     * @param socket connection where the request was received
+     * @param request the request
+     * @return the response, or null to send nothing
+     * @throws Exception if the request cannot be served; the connection is closed
+     */
+    @Nullable ResponseType handle(@NotNull TCPSocket socket, @NotNull RequestType request) throws Exception;
+}
@@ -18,12 +18,29 @@
 
 package me.melchor9000.net;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.SniHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AsyncMapping;
+import io.netty.util.DomainNameMapping;
+import io.netty.util.DomainNameMappingBuilder;
+import io.netty.util.concurrent.Promise;
 import org.jetbrains.annotations.NotNull;
 
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * <p>
@@ -42,6 +59,15 @@ import java.io.InputStream;
  *     All sockets will be of type {@link SSLSocket}.
  * </p>
  * <p>
+ *     The SSL context is built when the first connection is accepted, reading the
+ *     certificates only once, and shared by all the connections. To replace the
+ *     certificate without stopping the server, use a {@link SSLCertificateProvider}
+ *     like {@link SSLFileCertificateProvider}, that can reload it when the files
+ *     change. The context caches the SSL sessions, so clients that connect again
+ *     can resume their session with an abbreviated handshake. The cache can be tuned
+ *     with {@link #setSessionCacheSize(long)} and {@link #setSessionTimeout(long)}.
+ * </p>
+ * <p>
  *     <b>Note for Android:</b> An SSL Acceptor in Android will fail its creation.
  *     In general, use a Server in an Android app could lead into problems. If you
  *     need one, your solution could be create the acceptor using these constructors
@@ -52,12 +78,16 @@ import java.io.InputStream;
  * </p>
  */
 public class SSLAcceptor extends TCPAcceptor {
-    private File publicKeyFile;
-    private File privateKeyFile;
-    private InputStream publicKeyInputStream;
-    private InputStream privateKeyInputStream;
-    private String passwd;
+    private final SSLCertificateProvider provider;
     private SSLAcceptorConfigurator configurator;
+    private long sessionCacheSize;
+    private long sessionTimeout;
+    private volatile SslContext context;
+    private final Set<SslContext> configuredContexts = Collections.newSetFromMap(new WeakHashMap<SslContext, Boolean>());
+    private final Map<String, SSLCertificateProvider> hostProviders = new LinkedHashMap<>();
+    private volatile DomainNameMapping<SSLCertificateProvider> hosts;
+    private volatile long handshakeTimeout = SSLSocket.DEFAULT_HANDSHAKE_TIMEOUT;
+    private volatile boolean deliverAfterHandshake;
 
     /**
      * Creates a SSL acceptor for server applications. Uses a public and private certificates,
@@ -88,14 +118,11 @@ public class SSLAcceptor extends TCPAcceptor {
      * @param publicKey a {@link File} to the public certificate in {@code .pem} format
      * @param privateKey a {@link File} to the public certificate in {@code .pem} format
      * @param password the private key passphrase
+     * @throws IllegalArgumentException if the files don't exist or cannot be loaded
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull File publicKey, @NotNull File privateKey, String password) {
         super(service);
-        if(!publicKey.isFile()) throw new IllegalArgumentException("publicKey must exist");
-        if(!privateKey.isFile()) throw new IllegalArgumentException("privateKey must exist");
-        this.publicKeyFile = publicKey;
-        this.privateKeyFile = privateKey;
-        this.passwd = password;
+        this.provider = new SSLFileCertificateProvider(publicKey, privateKey, password);
     }
 
     /**
@@ -108,9 +135,7 @@ public class SSLAcceptor extends TCPAcceptor {
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull InputStream publicKey, @NotNull InputStream privateKey, String password) {
         super(service);
-        this.publicKeyInputStream = publicKey;
-        this.privateKeyInputStream = privateKey;
-        this.passwd = password;
+        this.provider = streamProvider(publicKey, privateKey, password);
     }
 
     /**
@@ -145,14 +170,11 @@ public class SSLAcceptor extends TCPAcceptor {
      * @param publicKey a {@link File} to the public certificate in {@code .pem} format
      * @param privateKey a {@link File} to the public certificate in {@code .pem} format
      * @param password the private key passphrase
+     * @throws IllegalArgumentException if the files don't exist or cannot be loaded
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull IOService worker, @NotNull File publicKey, @NotNull File privateKey, String password) {
         super(service, worker);
-        if(!publicKey.isFile()) throw new IllegalArgumentException("publicKey must exist");
-        if(!privateKey.isFile()) throw new IllegalArgumentException("privateKey must exist");
-        this.publicKeyFile = publicKey;
-        this.privateKeyFile = privateKey;
-        this.passwd = password;
+        this.provider = new SSLFileCertificateProvider(publicKey, privateKey, password);
     }
 
     /**
@@ -166,9 +188,7 @@ public class SSLAcceptor extends TCPAcceptor {
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull IOService worker, @NotNull InputStream publicKey, @NotNull InputStream privateKey, String password) {
         super(service, worker);
-        this.publicKeyInputStream = publicKey;
-        this.privateKeyInputStream = privateKey;
-        this.passwd = password;
+        this.provider = streamProvider(publicKey, privateKey, password);
     }
 
     /**
@@ -179,6 +199,7 @@ public class SSLAcceptor extends TCPAcceptor {
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull SSLAcceptorConfigurator configurator) {
         super(service);
+        this.provider = configuratorProvider(configurator);
         this.configurator = configurator;
     }
 
@@ -191,21 +212,231 @@ public class SSLAcceptor extends TCPAcceptor {
      */
     public SSLAcceptor(@NotNull IOService service, @NotNull IOService worker, @NotNull SSLAcceptorConfigurator configurator) {
         super(service, worker);
+        this.provider = configuratorProvider(configurator);
         this.configurator = configurator;
     }
 
+    /**
+     * Creates a SSL acceptor for server applications. The certificate and private key
+     * are given by the {@link SSLCertificateProvider}, which can replace them while the
+     * acceptor is running.
+     * @param service {@link IOService} for the acceptor and the sockets
+     * @param provider provider of the certificate and private key
+     */
+    public SSLAcceptor(@NotNull IOService service, @NotNull SSLCertificateProvider provider) {
+        super(service);
+        this.provider = provider;
+    }
+
+    /**
+     * Creates a SSL acceptor for server applications. The certificate and private key
+     * are given by the {@link SSLCertificateProvider}, which can replace them while the
+     * acceptor is running.
+     * @param service {@link IOService} for the acceptor
+     * @param worker {@link IOService} for the sockets
+     * @param provider provider of the certificate and private key
+     */
+    public SSLAcceptor(@NotNull IOService service, @NotNull IOService worker, @NotNull SSLCertificateProvider provider) {
+        super(service, worker);
+        this.provider = provider;
+    }
+
+    /**
+     * Sets the number of SSL sessions cached to be resumed. Must be called before
+     * accepting any connection.
+     * @param sessionCacheSize number of sessions, or 0 to use the default
+     */
+    public synchronized void setSessionCacheSize(long sessionCacheSize) {
+        if(sessionCacheSize < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        if(context != null) throw new IllegalStateException("The SSL context is already created");
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    /**
+     * Sets how long a SSL session can be resumed. Must be called before accepting
+     * any connection.
+     * @param sessionTimeout timeout in seconds, or 0 to use the default
+     */
+    public synchronized void setSessionTimeout(long sessionTimeout) {
+        if(sessionTimeout < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        if(context != null) throw new IllegalStateException("The SSL context is already created");
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * Sets the maximum time for the SSL handshake of every new connection. Already
+     * accepted connections are not affected.
+     * @param millis timeout in milliseconds, or 0 to disable it
+     * @see SSLSocket#setHandshakeTimeout(long)
+     */
+    public void setHandshakeTimeout(long millis) {
+        if(millis < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        this.handshakeTimeout = millis;
+    }
+
+    /**
+     * When enabled, the new connections are given to the {@code accept} calls or the
+     * listener only when the SSL handshake has completed. The connections whose handshake
+     * fails or times out are closed without being noticed, so slow or malicious clients
+     * never reach the application. By default, the sockets are given as soon as the
+     * connection is accepted.
+     * @param deliverAfterHandshake true to wait for the handshake before delivering the sockets
+     * @see #setHandshakeTimeout(long)
+     */
+    public void setDeliverAfterHandshake(boolean deliverAfterHandshake) {
+        this.deliverAfterHandshake = deliverAfterHandshake;
+    }
+
+    /**
+     * Serves a different certificate for the host name {@code hostname}, selected using
+     * the host name that the client sends in the handshake (SNI). Wildcards as in
+     * {@code *.example.com} are supported. The clients that send no host name, or one
+     * without certificate, get the certificate of the acceptor. Can be called while
+     * the acceptor is running: the new connections will use it.
+     * <p>
+     * The key material of the provider is loaded now if it was not, so any error in it
+     * is found here and not when a client connects.
+     * @param hostname host name, or a wildcard for the subdomains of one
+     * @param provider provider of the certificate and private key for the host
+     * @throws IOException if the key material cannot be loaded
+     * @see SSLSocket#serverName()
+     */
+    public synchronized void addHostCertificate(@NotNull String hostname, @NotNull SSLCertificateProvider provider) throws IOException {
+        provider.context();
+        hostProviders.put(hostname, provider);
+        updateHosts();
+    }
+
+    /**
+     * Stops serving a different certificate for the host name {@code hostname}.
+     * @param hostname host name, or a wildcard, as in {@link #addHostCertificate(String, SSLCertificateProvider)}
+     */
+    public synchronized void removeHostCertificate(@NotNull String hostname) {
+        hostProviders.remove(hostname);
+        updateHosts();
+    }
+
     @NotNull
     @Override
     protected TCPSocket createSocketForImplementation(@NotNull SocketChannel ch) throws IOException {
-        if(publicKeyFile != null) {
-            return new SSLSocket(this, ch, this.publicKeyFile, this.privateKeyFile, this.passwd);
-        } else if(publicKeyInputStream != null) {
-            return new SSLSocket(this, ch, this.publicKeyInputStream, this.privateKeyInputStream, this.passwd);
-        } else if(configurator != null) {
-            return new SSLSocket(this, ch, this.configurator);
+        SSLSocket socket = new SSLSocket(this, ch, handshakeTimeout);
+        DomainNameMapping<SSLCertificateProvider> hosts = this.hosts;
+        if(hosts == null) {
+            SslHandler handler = newSslHandler(ch, contextFor(provider));
+            ch.pipeline().addBefore("readManager", "ssl", handler);
+            socket.sslHandlerAdded(handler, null);
+        } else {
+            ch.pipeline().addBefore("readManager", "sni", new HostSelector(socket, hosts));
+        }
+        return socket;
+    }
+
+    @Override
+    void connectionAccepted(@NotNull final TCPSocket socket) {
+        if(!deliverAfterHandshake) {
+            deliver(socket);
+            return;
+        }
+
+        ((SSLSocket) socket).handshakeAsync().whenDone(new Callback<Future<Void>>() {
+            @Override
+            public void call(Future<Void> arg) {
+                if(arg.isSuccessful()) deliver(socket);
+                else socket.closeAsync();
+            }
+        });
+    }
+
+    /**
+     * @return the provider of the certificate and private key of this acceptor
+     */
+    public @NotNull SSLCertificateProvider getCertificateProvider() {
+        return provider;
+    }
+
+    private void updateHosts() {
+        if(hostProviders.isEmpty()) {
+            hosts = null;
         } else {
-            throw new IllegalStateException("Unreachable code, reached :(");
+            DomainNameMappingBuilder<SSLCertificateProvider> builder = new DomainNameMappingBuilder<>(provider);
+            for(Map.Entry<String, SSLCertificateProvider> entry : hostProviders.entrySet()) builder.add(entry.getKey(), entry.getValue());
+            hosts = builder.build();
         }
     }
 
+    private SslHandler newSslHandler(Channel ch, SslContext context) {
+        SslHandler handler = context.newHandler(ch.alloc());
+        if(configurator != null) {
+            SSLParameters np = configurator.changeParameters(handler.engine().getSSLParameters());
+            if(np != null) handler.engine().setSSLParameters(np);
+        }
+        return handler;
+    }
+
+    private SslContext contextFor(SSLCertificateProvider provider) throws IOException {
+        SslContext context = provider.context();
+        if(context != this.context) {
+            //A new context from a provider (loaded for first time or reloaded) or from another host
+            synchronized(configuredContexts) {
+                if(configuredContexts.add(context)) {
+                    SSLSessionContext sessionContext = context.sessionContext();
+                    if(sessionCacheSize != 0) sessionContext.setSessionCacheSize((int) Math.min(sessionCacheSize, Integer.MAX_VALUE));
+                    if(sessionTimeout != 0) sessionContext.setSessionTimeout((int) Math.min(sessionTimeout, Integer.MAX_VALUE));
+                }
+            }
+            this.context = context;
+        }
+        return context;
+    }
+
+    private static SSLCertificateProvider streamProvider(@NotNull final InputStream publicKey, @NotNull final InputStream privateKey, final String password) {
+        //The streams can be read only once, so this provider cannot be reloaded
+        return new SSLCertificateProvider() {
+            @NotNull
+            @Override
+            protected SslContextBuilder newBuilder() throws IOException {
+                if(isLoaded()) throw new IOException("The certificate streams were already read");
+                return password != null ? SslContextBuilder.forServer(publicKey, privateKey, password) : SslContextBuilder.forServer(publicKey, privateKey);
+            }
+        };
+    }
+
+    private static SSLCertificateProvider configuratorProvider(@NotNull final SSLAcceptorConfigurator configurator) {
+        return new SSLCertificateProvider() {
+            @NotNull
+            @Override
+            protected SslContextBuilder newBuilder() throws IOException {
+                return configurator.configureWithProvider(SslContextBuilder.forServer(configurator.getFactory()));
+            }
+        };
+    }
+
+    /**
+     * Selects the SSL context using the host name sent by the client, and replaces
+     * itself with the {@link SslHandler}.
+     */
+    private class HostSelector extends SniHandler {
+        private final SSLSocket socket;
+
+        private HostSelector(SSLSocket socket, final DomainNameMapping<SSLCertificateProvider> hosts) {
+            super(new AsyncMapping<String, SslContext>() {
+                @Override
+                public io.netty.util.concurrent.Future<SslContext> map(String hostname, Promise<SslContext> promise) {
+                    try {
+                        return promise.setSuccess(contextFor(hosts.map(hostname)));
+                    } catch(IOException e) {
+                        return promise.setFailure(e);
+                    }
+                }
+            });
+            this.socket = socket;
+        }
+
+        @Override
+        protected void replaceHandler(ChannelHandlerContext ctx, String hostname, SslContext sslContext) throws Exception {
+            SslHandler handler = newSslHandler(ctx.channel(), sslContext);
+            ctx.pipeline().replace(this, "ssl", handler);
+            socket.sslHandlerAdded(handler, hostname);
+        }
+    }
 }
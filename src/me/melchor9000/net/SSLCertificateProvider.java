@@ -0,0 +1,118 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ *     Provides the certificate and private key of a {@link SSLAcceptor}. The key material
+ *     is loaded once into a SSL context that is shared by all the connections, so the
+ *     accepted connections do not read anything from disk.
+ * </p>
+ * <p>
+ *     Calling {@link #reload()} loads the key material again and replaces the context
+ *     atomically: new handshakes use the new certificate, while the established
+ *     connections keep working with the old one. If the reload fails, the current
+ *     context is kept. See {@link SSLFileCertificateProvider} for a provider that
+ *     reloads when the files change.
+ * </p>
+ * <p>
+ *     A provider can be shared by more than one {@link SSLAcceptor}.
+ * </p>
+ */
+public abstract class SSLCertificateProvider implements AutoCloseable {
+    private volatile SslContext context;
+    private volatile String[] applicationProtocols;
+
+    /**
+     * Creates a new builder with the certificate and private key, and any other
+     * option for the SSL context. Called every time the key material is loaded,
+     * never from an event loop after the first connection.
+     * @return a {@link SslContextBuilder} for a server
+     * @throws IOException if the key material cannot be read
+     */
+    protected abstract @NotNull SslContextBuilder newBuilder() throws IOException;
+
+    /**
+     * Loads the key material again and replaces the SSL context with the new one.
+     * The sessions of the old context cannot be resumed with the new one.
+     * @throws IOException if the key material cannot be read or is not valid; the
+     * current context is kept
+     */
+    public synchronized void reload() throws IOException {
+        SslContextBuilder builder = newBuilder();
+        String[] protocols = applicationProtocols;
+        if(protocols != null) {
+            builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                    ApplicationProtocolConfig.Protocol.ALPN,
+                    ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                    protocols
+            ));
+        }
+        context = builder.build();
+    }
+
+    /**
+     * Sets the application protocols that the server supports, in order of preference,
+     * to be negotiated with the clients using ALPN. If the client supports none of them,
+     * the handshake continues without protocol. Takes effect the next time the key
+     * material is loaded.
+     * @param protocols protocols as {@code "h2"} or {@code "http/1.1"}, or none to disable ALPN
+     * @see SSLSocket#applicationProtocol()
+     */
+    public void setApplicationProtocols(@NotNull String... protocols) {
+        applicationProtocols = protocols.length != 0 ? protocols.clone() : null;
+    }
+
+    /**
+     * @return true if the key material is already loaded
+     */
+    public boolean isLoaded() {
+        return context != null;
+    }
+
+    /**
+     * Stops any background work of the provider. By default does nothing.
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * @return the current SSL context, loading it if it is the first time
+     * @throws IOException if the key material cannot be read
+     */
+    @NotNull SslContext context() throws IOException {
+        SslContext context = this.context;
+        if(context == null) {
+            synchronized(this) {
+                if(this.context == null) reload();
+                context = this.context;
+            }
+        }
+        return context;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * <p>
+ *     {@link SSLCertificateProvider} that reads a public certificate and a private key,
+ *     both in {@code .pem} format, from files. The files are read when the provider
+ *     is created, so errors in them are found there and the event loops never read
+ *     them when a client connects.
+ * </p>
+ * <p>
+ *     With {@link #watch()}, a background thread waits for changes in the files and
+ *     reloads the key material when any of them changes, as when a certificate is
+ *     renewed. The event loops are never blocked by it. If the files are not valid
+ *     after the change (for example, the certificate was replaced but the key not yet),
+ *     the current certificate is kept until the next change. Call {@link #close()} to
+ *     stop watching.
+ * </p>
+ */
+public class SSLFileCertificateProvider extends SSLCertificateProvider {
+    private static final long SETTLE_TIME = 200;
+
+    private final File publicKey;
+    private final File privateKey;
+    private final String password;
+    private WatchService watchService;
+    private Thread watcher;
+    private volatile Callback<Throwable> onReload;
+
+    /**
+     * Creates a provider for a public certificate and a private key without passphrase.
+     * @param publicKey a {@link File} to the public certificate in {@code .pem} format
+     * @param privateKey a {@link File} to the private key in {@code .pem} format
+     * @throws IllegalArgumentException if the files don't exist or cannot be loaded
+     */
+    public SSLFileCertificateProvider(@NotNull File publicKey, @NotNull File privateKey) {
+        this(publicKey, privateKey, null);
+    }
+
+    /**
+     * Creates a provider for a public certificate and a private key with passphrase.
+     * @param publicKey a {@link File} to the public certificate in {@code .pem} format
+     * @param privateKey a {@link File} to the private key in {@code .pem} format
+     * @param password the private key passphrase, or null if it has not
+     * @throws IllegalArgumentException if the files don't exist or cannot be loaded
+     */
+    public SSLFileCertificateProvider(@NotNull File publicKey, @NotNull File privateKey, @Nullable String password) {
+        if(!publicKey.isFile()) throw new IllegalArgumentException("publicKey must exist");
+        if(!privateKey.isFile()) throw new IllegalArgumentException("privateKey must exist");
+        this.publicKey = publicKey.getAbsoluteFile();
+        this.privateKey = privateKey.getAbsoluteFile();
+        this.password = password;
+        try {
+            reload();
+        } catch(IOException e) {
+            throw new IllegalArgumentException("Cannot load the certificate " + publicKey, e);
+        }
+    }
+
+    @NotNull
+    @Override
+    protected SslContextBuilder newBuilder() throws IOException {
+        return password != null ?
+                SslContextBuilder.forServer(publicKey, privateKey, password) :
+                SslContextBuilder.forServer(publicKey, privateKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As the key material is already loaded, it is loaded again now with the protocols.
+     * @throws IllegalStateException if the key material cannot be loaded again
+     */
+    @Override
+    public void setApplicationProtocols(@NotNull String... protocols) {
+        super.setApplicationProtocols(protocols);
+        try {
+            reload();
+        } catch(IOException e) {
+            throw new IllegalStateException("Cannot reload the certificate " + publicKey, e);
+        }
+    }
+
+    /**
+     * Sets a listener that is called from the watcher thread after every reload
+     * caused by a change in the files, with null if the reload was done or with
+     * the cause if failed.
+     * @param cbk listener for the reloads, or null
+     */
+    public void setOnReloadListener(@Nullable Callback<Throwable> cbk) {
+        onReload = cbk;
+    }
+
+    /**
+     * Starts watching the files for changes.
+     * @throws IOException if the directories of the files cannot be watched
+     */
+    public synchronized void watch() throws IOException {
+        if(watcher != null) return;
+
+        final WatchService watchService = FileSystems.getDefault().newWatchService();
+        Path publicDir = publicKey.getParentFile().toPath();
+        Path privateDir = privateKey.getParentFile().toPath();
+        publicDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+        if(!privateDir.equals(publicDir)) privateDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+
+        this.watchService = watchService;
+        watcher = new DefaultThreadFactory("certificateWatcher", true).newThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while(true) {
+                        if(!hasChanges(watchService.take())) continue;
+                        //Files are usually written in more than one step, wait until they settle
+                        WatchKey key;
+                        while((key = watchService.poll(SETTLE_TIME, TimeUnit.MILLISECONDS)) != null) hasChanges(key);
+                        reloadFromWatcher();
+                    }
+                } catch(InterruptedException | ClosedWatchServiceException ignore) {}
+            }
+        });
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the files.
+     */
+    @Override
+    public synchronized void close() {
+        if(watcher == null) return;
+        try {
+            watchService.close();
+        } catch(IOException ignore) {}
+        watcher.interrupt();
+        watcher = null;
+        watchService = null;
+    }
+
+    private boolean hasChanges(WatchKey key) {
+        boolean changed = false;
+        Path dir = (Path) key.watchable();
+        for(WatchEvent<?> event : key.pollEvents()) {
+            if(event.context() instanceof Path) {
+                Path file = dir.resolve((Path) event.context());
+                changed |= file.equals(publicKey.toPath()) || file.equals(privateKey.toPath());
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    private void reloadFromWatcher() {
+        Throwable cause = null;
+        try {
+            reload();
+        } catch(Throwable t) {
+            cause = t;
+        }
+
+        Callback<Throwable> cbk = onReload;
+        if(cbk != null) {
+            try {
+                cbk.call(cause);
+            } catch(Throwable t) {
+                System.err.println("Caught a Throwable inside the certificate reload Callback");
+                t.printStackTrace();
+            }
+        } else if(cause != null) {
+            System.err.println("Could not reload the certificate " + publicKey);
+            cause.printStackTrace();
+        }
+    }
+}
@@ -18,17 +18,29 @@
 
 package me.melchor9000.net;
 
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.Promise;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
 import java.io.File;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * <p>SSL Socket for connexions to servers, based on a {@link TCPSocket}.</p>
@@ -49,6 +61,20 @@ import java.io.InputStream;
  *     so take account on that.
  * </p>
  * <p>
+ *     The SSL context (certificates, trust managers, session cache...) is built once and
+ *     shared by all the sockets created with the same configuration: the default one, the
+ *     same certificate file (by its path) or the same {@link SSLSocketConfigurator} object. As
+ *     the sessions are cached in the context, a new connection to a server already
+ *     connected can resume the session, doing an abbreviated handshake.
+ * </p>
+ * <p>
+ *     The contexts of the certificate files live while the application runs. Every new
+ *     connection checks the modification time and the size of the file, and if any of them
+ *     changed, the context is built again from the new file; the sockets already
+ *     connected keep the old one. The contexts of the {@link SSLSocketConfigurator}
+ *     objects are released when the configurator is no longer used.
+ * </p>
+ * <p>
  *     See {@link TCPSocket} and {@link Socket} for the whole API
  * </p>
  * <p>
@@ -85,6 +111,23 @@ import java.io.InputStream;
  * </p>
  */
 public class SSLSocket extends TCPSocket {
+    //The files are kept by path, as no one else holds the File; the configurators are owned by the user
+    private static final Map<String, FileContext> fileContexts = new HashMap<>();
+    private static final Map<SSLSocketConfigurator, SslContext> configuratorContexts = new WeakHashMap<>();
+    private static SslContext defaultContext;
+
+    private final SSLSocketConfigurator configurator;
+    private InputStream certificate;
+    private SslContext context;
+    private volatile InetSocketAddress peer;
+    private volatile long handshakeTimeout = DEFAULT_HANDSHAKE_TIMEOUT;
+    private Promise<Void> serverHandshake;
+    private volatile String serverName;
+
+    /**
+     * Default time for the handshake to complete, in milliseconds.
+     */
+    public static final long DEFAULT_HANDSHAKE_TIMEOUT = 10000;
 
     /**
      * <p>Creates a SSL socket using the Java implementation and the system's keychain
@@ -95,16 +138,8 @@ public class SSLSocket extends TCPSocket {
      */
     public SSLSocket(@NotNull IOService service) {
         super(service);
-        bootstrap
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) throws Exception {
-                        SslContextBuilder ctx = SslContextBuilder.forClient();
-                        SslContext ctx2 = ctx.build();
-                        ch.pipeline().addLast("readManager", readManager);
-                        ch.pipeline().addBefore("readManager","ssl", ctx2.newHandler(ch.alloc()));
-                    }
-                });
+        this.configurator = null;
+        initClient(null);
     }
 
     /**
@@ -118,16 +153,8 @@ public class SSLSocket extends TCPSocket {
      */
     public SSLSocket(@NotNull IOService service, @NotNull final File certificate) {
         super(service);
-        bootstrap
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) throws Exception {
-                        SslContextBuilder ctx = SslContextBuilder.forClient();
-                        ctx.trustManager(certificate.getAbsoluteFile());
-                        ch.pipeline().addLast("readManager", readManager);
-                        ch.pipeline().addBefore("readManager","ssl", ctx.build().newHandler(ch.alloc()));
-                    }
-                });
+        this.configurator = null;
+        initClient(certificate.getAbsolutePath());
     }
 
     /**
@@ -136,21 +163,16 @@ public class SSLSocket extends TCPSocket {
      * <p>In HTTPS, the host identification is not done. If you need this extra of security,
      * you should use {@link #SSLSocket(IOService, SSLSocketConfigurator)} and use the
      * option {@link SslContextBuilder#trustManager(InputStream)}.</p>
+     * <p>As the stream can only be read once, the SSL context of this socket is not shared
+     * with others.</p>
      * @param service {@link IOService} to attach this socket
      * @param certificate Certificate chain in {@code .pem} format
      */
     public SSLSocket(@NotNull IOService service, @NotNull final InputStream certificate) {
         super(service);
-        bootstrap
-                .handler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel ch) throws Exception {
-                        SslContextBuilder ctx = SslContextBuilder.forClient();
-                        ctx.trustManager(certificate);
-                        ch.pipeline().addLast("readManager", readManager);
-                        ch.pipeline().addBefore("readManager","ssl", ctx.build().newHandler(ch.alloc()));
-                    }
-                });
+        this.configurator = null;
+        this.certificate = certificate;
+        initClient(null);
     }
 
     /**
@@ -161,47 +183,240 @@ public class SSLSocket extends TCPSocket {
      * <p>For enable host identification for HTTPS, you should override
      * {@link SSLSocketConfigurator#changeParameters(SSLParameters)} and set the option
      * {@link SSLParameters#setEndpointIdentificationAlgorithm(String)} to {@code "HTTPS"}</p>
+     * <p>The SSL context is shared by all the sockets created with the same {@code conf}
+     * object, so reuse it to resume the sessions.</p>
      * @param service {@link IOService} to attach this socket
      * @param conf Custom configuration set in {@link SSLSocketConfigurator}
      */
     public SSLSocket(@NotNull IOService service, @NotNull final SSLSocketConfigurator conf) {
         super(service);
+        this.configurator = conf;
+        initClient(conf);
+    }
+
+    SSLSocket(SSLAcceptor acceptor, SocketChannel socket, long handshakeTimeout) {
+        super(acceptor, socket);
+        this.configurator = null;
+        this.handshakeTimeout = handshakeTimeout;
+        //The SslHandler may be added later, when the SNI host name is known
+        final Promise<Void> handshake = serverHandshake = socket.eventLoop().newPromise();
+        socket.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                handshake.tryFailure(new ClosedChannelException());
+            }
+        });
+        if(handshakeTimeout > 0) {
+            //SslHandler only applies the handshake timeout in client mode
+            //The timer wheel avoids a scheduled task per accepted socket in the event loop
+            final Timeout timer = service.timeout(new Procedure() {
+                @Override
+                public void call() {
+                    if(!handshake.isDone()) channel.close();
+                }
+            }, handshakeTimeout);
+            handshake.addListener(new GenericFutureListener<io.netty.util.concurrent.Future<Void>>() {
+                @Override
+                public void operationComplete(io.netty.util.concurrent.Future<Void> future) throws Exception {
+                    timer.cancel();
+                }
+            });
+        }
+    }
+
+    /**
+     * Called by the {@link SSLAcceptor} when the {@link SslHandler} of an accepted
+     * socket is added to the pipeline.
+     * @param handler the handler
+     * @param serverName the host name requested by the client using SNI, or null
+     */
+    void sslHandlerAdded(@NotNull SslHandler handler, @Nullable String serverName) {
+        this.serverName = serverName;
+        handler.handshakeFuture().addListener(new GenericFutureListener<io.netty.util.concurrent.Future<Object>>() {
+            @Override
+            public void operationComplete(io.netty.util.concurrent.Future<Object> future) throws Exception {
+                if(future.isSuccess()) serverHandshake.trySuccess(null);
+                else serverHandshake.tryFailure(future.cause());
+            }
+        });
+    }
+
+    @Override
+    public void connect(@NotNull SocketAddress endpoint) throws InterruptedException {
+        if(endpoint instanceof InetSocketAddress) peer = (InetSocketAddress) endpoint;
+        super.connect(endpoint);
+    }
+
+    @NotNull
+    @Override
+    public Future<Void> connectAsync(@NotNull SocketAddress endpoint) {
+        if(endpoint instanceof InetSocketAddress) peer = (InetSocketAddress) endpoint;
+        return super.connectAsync(endpoint);
+    }
+
+    /**
+     * Waits until the SSL handshake is completed. Any receive operation waits
+     * for the handshake too, but this allows to know when the connection is
+     * secure, or why it failed, without sending or receiving anything.
+     * @throws InterruptedException if it is interrupted
+     * @throws SSLException (not declared) if the handshake failed or timed out
+     */
+    public void handshake() throws InterruptedException {
+        checkSocketCreated("handshake");
+        Blocking.syncInterruptibly(handshakeFuture());
+    }
+
+    /**
+     * Returns a {@link Future} that completes when the SSL handshake is done. If
+     * the handshake fails or does not complete before the handshake timeout, the
+     * future fails and the socket is closed.
+     * @return a {@link Future} for the handshake
+     * @see #setHandshakeTimeout(long)
+     */
+    public @NotNull Future<Void> handshakeAsync() {
+        checkSocketCreated("handshakeAsync");
+        final FutureImpl<Void> future = createFuture((Procedure) null);
+        handshakeFuture().addListener(new GenericFutureListener<io.netty.util.concurrent.Future<Object>>() {
+            @Override
+            public void operationComplete(io.netty.util.concurrent.Future<Object> f) throws Exception {
+                if(f.isSuccess()) future.postSuccess(null);
+                else future.postError(f.cause());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the maximum time for the SSL handshake to complete. When it passes, the
+     * handshake fails and the socket is closed. Must be called before any
+     * {@code connect} method. By default is {@link #DEFAULT_HANDSHAKE_TIMEOUT}.
+     * For the sockets of a {@link SSLAcceptor}, see {@link SSLAcceptor#setHandshakeTimeout(long)}.
+     * @param millis timeout in milliseconds, or 0 to disable it
+     */
+    public void setHandshakeTimeout(long millis) {
+        if(millis < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        handshakeTimeout = millis;
+    }
+
+    /**
+     * @return the maximum time for the SSL handshake to complete, in milliseconds
+     */
+    public long getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    @Override
+    boolean supportsFileRegion() {
+        return false;
+    }
+
+    /**
+     * Returns the application protocol negotiated with ALPN during the handshake, as
+     * {@code "h2"} or {@code "http/1.1"}. The protocols are configured in the SSL context
+     * using {@link SslContextBuilder#applicationProtocolConfig(ApplicationProtocolConfig)}
+     * (for clients, in {@link SSLSocketConfigurator#configure(SslContextBuilder)}) or,
+     * for the servers, with {@link SSLCertificateProvider#setApplicationProtocols(String...)}.
+     * @return the negotiated protocol, or null if the handshake is not done or there was
+     * no negotiation
+     */
+    public @Nullable String applicationProtocol() {
+        SslHandler handler = channel != null ? sslHandler() : null;
+        return handler != null ? handler.applicationProtocol() : null;
+    }
+
+    /**
+     * @return for sockets accepted by a {@link SSLAcceptor}, the host name that the client
+     * requested using SNI, or null if the client sent none or this is a client socket
+     */
+    public @Nullable String serverName() {
+        return serverName;
+    }
+
+    private @Nullable SslHandler sslHandler() {
+        return (SslHandler) channel.pipeline().get("ssl");
+    }
+
+    private io.netty.util.concurrent.Future<?> handshakeFuture() {
+        if(serverHandshake != null) return serverHandshake;
+        //When the socket is closed, the handlers are removed from the pipeline
+        SslHandler handler = sslHandler();
+        return handler != null ? handler.handshakeFuture() : channel.newFailedFuture(new ClosedChannelException());
+    }
+
+    private void initClient(@Nullable final Object sharedKey) {
         bootstrap
                 .handler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
-                        SslContextBuilder ctx = SslContextBuilder.forClient();
-                        conf.configure(ctx);
-                        SslHandler handler = ctx.build().newHandler(ch.alloc());
-                        SSLParameters p = handler.engine().getSSLParameters();
-                        SSLParameters np = conf.changeParameters(p);
-                        if(np != null) handler.engine().setSSLParameters(np);
+                        //Knowing the peer, the engine can look for a cached session to resume
+                        InetSocketAddress peer = SSLSocket.this.peer;
+                        SslContext ctx = clientContext(sharedKey);
+                        SslHandler handler = peer != null ?
+                                ctx.newHandler(ch.alloc(), peer.getHostString(), peer.getPort()) :
+                                ctx.newHandler(ch.alloc());
+                        handler.setHandshakeTimeoutMillis(handshakeTimeout);
+                        if(configurator != null) {
+                            SSLParameters np = configurator.changeParameters(handler.engine().getSSLParameters());
+                            if(np != null) handler.engine().setSSLParameters(np);
+                        }
                         ch.pipeline().addLast("readManager", readManager);
                         ch.pipeline().addBefore("readManager","ssl", handler);
                     }
                 });
     }
 
-    SSLSocket(SSLAcceptor acceptor, SocketChannel socket, File publicKey, File privateKey, String passwd) throws SSLException {
-        super(acceptor, socket);
-        SslContext ctx = (passwd != null ? SslContextBuilder.forServer(publicKey, privateKey, passwd) : SslContextBuilder.forServer(publicKey, privateKey)).build();
-        socket.pipeline().addBefore("readManager", "ssl", ctx.newHandler(socket.alloc()));
+    private synchronized SslContext clientContext(@Nullable Object sharedKey) throws SSLException {
+        if(context != null) return context;
+        if(certificate != null) {
+            context = SslContextBuilder.forClient().trustManager(certificate).build();
+            certificate = null;
+        } else {
+            context = sharedClientContext(sharedKey);
+        }
+        return context;
     }
 
-    SSLSocket(SSLAcceptor acceptor, SocketChannel socket, InputStream publicKey, InputStream privateKey, String passwd) throws SSLException {
-        super(acceptor, socket);
-        SslContext ctx = (passwd != null ? SslContextBuilder.forServer(publicKey, privateKey, passwd) : SslContextBuilder.forServer(publicKey, privateKey)).build();
-        socket.pipeline().addBefore("readManager", "ssl", ctx.newHandler(socket.alloc()));
+    private static SslContext sharedClientContext(@Nullable Object key) throws SSLException {
+        synchronized(fileContexts) {
+            if(key == null) {
+                if(defaultContext == null) defaultContext = SslContextBuilder.forClient().build();
+                return defaultContext;
+            }
+
+            if(key instanceof String) {
+                File file = new File((String) key);
+                long lastModified = file.lastModified(), length = file.length();
+                FileContext context = fileContexts.get(key);
+                if(context == null || context.lastModified != lastModified || context.length != length) {
+                    //The file is new or has changed: the old context is dropped with its sessions
+                    context = new FileContext(SslContextBuilder.forClient().trustManager(file).build(), lastModified, length);
+                    fileContexts.put((String) key, context);
+                }
+                return context.context;
+            }
+
+            SSLSocketConfigurator configurator = (SSLSocketConfigurator) key;
+            SslContext context = configuratorContexts.get(configurator);
+            if(context == null) {
+                SslContextBuilder builder = SslContextBuilder.forClient();
+                configurator.configureWithProvider(builder);
+                configuratorContexts.put(configurator, context = builder.build());
+            }
+            return context;
+        }
     }
 
-    SSLSocket(SSLAcceptor acceptor, SocketChannel socket, SSLAcceptorConfigurator configurator) throws SSLException {
-        super(acceptor, socket);
-        SslContextBuilder builder = SslContextBuilder.forServer(configurator.getFactory());
-        configurator.configure(builder);
-        SslHandler handler = builder.build().newHandler(socket.alloc());
-        SSLParameters p = handler.engine().getSSLParameters();
-        SSLParameters np = configurator.changeParameters(p);
-        if(np != null) handler.engine().setSSLParameters(np);
-        socket.pipeline().addBefore("readManager", "ssl", handler);
+    /**
+     * A shared context for a certificate file, with the state of the file when it was built
+     */
+    private static class FileContext {
+        private final SslContext context;
+        private final long lastModified, length;
+
+        private FileContext(SslContext context, long lastModified, long length) {
+            this.context = context;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
     }
 }
@@ -0,0 +1,50 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Decodes the requests and encodes the responses of a {@link PipelinedServer}.
+ * The methods are called from the event loop of the connection.
+ * @param <RequestType> type of the requests
+ * @param <ResponseType> type of the responses
+ */
+public interface ServerCodec<RequestType, ResponseType> {
+
+    /**
+     * Reads one request from {@code in}. If there is not a whole request in the
+     * buffer, returns null without consuming anything, and will be called again
+     * when more data is received.
+     * @param in buffer with the received data
+     * @return a request, or null if there's not enough data
+     * @throws Exception if the data received is not valid; the connection is closed
+     */
+    @Nullable RequestType decode(@NotNull ByteBuf in) throws Exception;
+
+    /**
+     * Writes the {@code response} into {@code out}.
+     * @param response the response
+     * @param out buffer where to write the response
+     * @throws Exception if the response cannot be encoded; the connection is closed
+     */
+    void encode(@NotNull ResponseType response, @NotNull ByteBuf out) throws Exception;
+}
@@ -21,18 +21,20 @@ package me.melchor9000.net;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
 import me.melchor9000.net.resolver.DNSResolver;
 import me.melchor9000.net.resolver.serverLookup.DNSServerProvider;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Array;
 import java.net.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -43,18 +45,26 @@ public abstract class Socket implements AutoCloseable {
     protected final IOService service;
     protected Channel channel;
     protected Bootstrap bootstrap;
+    /**
+     * @deprecated use {@link #metrics()}. The fields are still updated with the
+     * bytes received and sent, without synchronization
+     */
+    @Deprecated
     protected long bytesRead, bytesWrote;
+    final SocketMetrics metrics;
     private List<Callback<Socket>> readNotifications;
 
     Socket(@NotNull IOService service) {
         this.service = service;
         this.bootstrap = new Bootstrap().group(service.group);
+        this.metrics = new SocketMetrics(this, service.metrics);
         readNotifications = new ArrayList<>();
     }
 
     Socket(@NotNull IOService service, @NotNull Channel channel) {
         this.service = service;
         this.channel = channel;
+        this.metrics = new SocketMetrics(this, service.metrics);
         readNotifications = new ArrayList<>();
     }
 
@@ -66,7 +76,7 @@ public abstract class Socket implements AutoCloseable {
     @Override
     public void close() {
         checkSocketCreated("close");
-        channel.close().syncUninterruptibly();
+        Blocking.sync(channel.close());
     }
 
     /**
@@ -85,7 +95,9 @@ public abstract class Socket implements AutoCloseable {
      * @param local address to bind
      */
     public void bind(@NotNull SocketAddress local)  {
-        channel = bootstrap.bind(local).syncUninterruptibly().channel();
+        ChannelFuture future = bootstrap.bind(local);
+        Blocking.sync(future);
+        channel = future.channel();
         bootstrap = null;
     }
 
@@ -95,7 +107,9 @@ public abstract class Socket implements AutoCloseable {
      * this could fail.
      */
     public void bind() {
-        channel = bootstrap.bind(0).syncUninterruptibly().channel();
+        ChannelFuture future = bootstrap.bind(0);
+        Blocking.sync(future);
+        channel = future.channel();
         bootstrap = null;
     }
 
@@ -106,7 +120,9 @@ public abstract class Socket implements AutoCloseable {
      * @throws InterruptedException When this {@link Thread} is interrupted
      */
     public void connect(@NotNull SocketAddress endpoint) throws InterruptedException  {
-        channel = bootstrap.connect(endpoint).sync().channel();
+        ChannelFuture future = bootstrap.connect(endpoint);
+        Blocking.syncInterruptibly(future);
+        channel = future.channel();
         bootstrap = null;
     }
 
@@ -174,37 +190,17 @@ public abstract class Socket implements AutoCloseable {
      */
     public @NotNull Future<Void> connectAsync(@NotNull String hostName, final int port, @NotNull DNSServerProvider provider) throws UnknownHostException {
         final DNSResolver resolver = new DNSResolver(service, provider);
-        final Future<?> f[] = (Future<?>[]) Array.newInstance(Future.class, 1);
-        final FutureImpl<Void> future = createFuture(new Procedure() {
+        return resolver.resolveAsyncV4(hostName).thenCompose(new Transformer<Iterable<InetAddress>, Future<Void>>() {
             @Override
-            public void call() {
-                f[0].cancel(true);
+            public Future<Void> call(Iterable<InetAddress> arg) {
+                return connectAsync(arg.iterator().next(), port);
             }
-        });
-        future.whenDone(new Callback<Future<Void>>() {
+        }).whenDone(new Callback<Future<Void>>() {
             @Override
             public void call(Future<Void> arg) {
                 resolver.closeAsync();
             }
         });
-
-        f[0] = resolver.resolveAsyncV4(hostName).whenDone(new Callback<Future<Iterable<InetAddress>>>() {
-            @Override
-            public void call(Future<Iterable<InetAddress>> arg) {
-                if(arg.isSuccessful()) {
-                    f[0] = connectAsync(arg.getValueNow().iterator().next(), port).whenDone(new Callback<Future<Void>>() {
-                        @Override
-                        public void call(Future<Void> arg) {
-                            if(arg.isSuccessful()) future.postSuccess(null);
-                            else if(!arg.isCancelled()) future.postError(arg.cause());
-                        }
-                    });
-                } else if(!arg.isCancelled()) {
-                    future.postError(arg.cause());
-                }
-            }
-        });
-        return future;
     }
 
     /**
@@ -243,11 +239,15 @@ public abstract class Socket implements AutoCloseable {
      */
     public long send(@NotNull ByteBuf data, int bytes) throws InterruptedException {
         checkSocketCreated("send");
+        long startTime = System.nanoTime();
         ByteBuf buff = ByteBufAllocator.DEFAULT.buffer(bytes).retain();
         buff.writeBytes(data, 0, bytes);
-        channel.writeAndFlush(buff).sync();
-        buff.release();
-        bytesWrote += bytes;
+        try {
+            Blocking.syncInterruptibly(channel.writeAndFlush(buff));
+        } finally {
+            buff.release();
+        }
+        metrics.sent(bytes, startTime);
         return bytes;
     }
 
@@ -263,12 +263,13 @@ public abstract class Socket implements AutoCloseable {
      */
     public @NotNull Future<Void> sendAsync(ByteBuf data, final int bytes) {
         checkSocketCreated("sendAsync");
+        final long startTime = System.nanoTime();
         final ByteBuf buff = ByteBufAllocator.DEFAULT.directBuffer(bytes).retain();
         buff.writeBytes(data, 0, bytes);
         return createFuture(channel.writeAndFlush(buff).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
-                bytesWrote += bytes;
+                if(future.isSuccess()) metrics.sent(bytes, startTime);
                 buff.release();
             }
         }));
@@ -286,6 +287,70 @@ public abstract class Socket implements AutoCloseable {
         return sendAsync(data, data.readableBytes());
     }
 
+    /**
+     * Sends the readable bytes of all the {@code parts} as one message, in order.
+     * See {@link #sendAsync(Iterable)}.
+     * @param parts buffers with the data to be sent
+     * @return a {@link Future} representing this task
+     */
+    public @NotNull Future<Void> sendAsync(@NotNull ByteBuf... parts) {
+        return sendAsync(Arrays.asList(parts));
+    }
+
+    /**
+     * Sends the readable bytes of all the {@code parts} as one message, in order, as
+     * a header and a body. The parts are not copied into a new buffer: they are joined
+     * in a {@link CompositeByteBuf} and written with one gathering write, one flush
+     * and one {@link Future}. The buffers must not be modified until the task is done.
+     * Their reader index is not changed and they are not released.
+     * This is an asynchronous operation, so returns a {@link Future} representing the task.
+     * @param parts buffers with the data to be sent
+     * @return a {@link Future} representing this task
+     */
+    public @NotNull Future<Void> sendAsync(@NotNull Iterable<ByteBuf> parts) {
+        checkSocketCreated("sendAsync");
+        final long startTime = System.nanoTime();
+        final CompositeByteBuf buff = gather(parts);
+        final int bytes = buff.readableBytes();
+        return createFuture(channel.writeAndFlush(buff).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                if(future.isSuccess()) metrics.sent(bytes, startTime);
+            }
+        }));
+    }
+
+    /**
+     * Sends the readable bytes of all the {@code parts} as one message, in order.
+     * See {@link #sendAsync(Iterable)}.
+     * @param parts buffers with the data to be sent
+     * @return bytes sent
+     * @throws InterruptedException if the send operation is interrupted
+     */
+    public long send(@NotNull ByteBuf... parts) throws InterruptedException {
+        checkSocketCreated("send");
+        long startTime = System.nanoTime();
+        CompositeByteBuf buff = gather(Arrays.asList(parts));
+        int bytes = buff.readableBytes();
+        Blocking.syncInterruptibly(channel.writeAndFlush(buff));
+        metrics.sent(bytes, startTime);
+        return bytes;
+    }
+
+    private CompositeByteBuf gather(Iterable<ByteBuf> parts) {
+        CompositeByteBuf buff = channel.alloc().compositeDirectBuffer(Integer.MAX_VALUE);
+        try {
+            for(ByteBuf part : parts) {
+                if(part.isReadable()) buff.addComponent(true, part.retainedSlice());
+            }
+        } catch(RuntimeException | Error e) {
+            //Releases the composite and the slices already added to it
+            buff.release();
+            throw e;
+        }
+        return buff;
+    }
+
     /**
      * Receives some data from the socket into the {@link ByteBuf}. This method
      * doesn't ensure to write exactly {@code data.remaining()} bytes. Use instead
@@ -396,14 +461,39 @@ public abstract class Socket implements AutoCloseable {
      * @return the number of bytes sent by this socket
      */
     public long sendBytes() {
-        return bytesWrote;
+        return metrics.bytesSent().get();
     }
 
     /**
      * @return the number of bytes received by this socket
      */
     public long receivedBytes() {
-        return bytesRead;
+        return metrics.bytesReceived().get();
+    }
+
+    /**
+     * @return the metrics of this socket
+     */
+    public @NotNull SocketMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Makes the socket use the event loop {@code loop} when it is created,
+     * instead of any of the {@link IOService}. Must be called before any
+     * {@code bind} or {@code connect} method.
+     * @param loop event loop of the {@link IOService} of the socket
+     */
+    void setEventLoop(@NotNull EventLoop loop) {
+        if(bootstrap == null) throw new IllegalStateException("The socket is already created");
+        bootstrap = bootstrap.clone(loop);
+    }
+
+    /**
+     * @return the number of receive operations waiting for data
+     */
+    int pendingReceives() {
+        return 0;
     }
 
     /**
@@ -0,0 +1,204 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of connected sockets, that allows to send the same data to all of them
+ * at once. The data is not copied for every socket: all of them send the same
+ * buffer. The sockets are grouped by the event loop where they live, and every
+ * event loop writes and flushes its sockets in one task.
+ * <p>
+ * Closed sockets are removed from the group automatically.
+ */
+public final class SocketGroup implements Iterable<Socket> {
+    private final IOService service;
+    private final ConcurrentMap<EventLoop, Set<Socket>> sockets = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Creates an empty group
+     * @param service {@link IOService} where the {@link Future} of this group run
+     */
+    public SocketGroup(@NotNull IOService service) {
+        this.service = service;
+    }
+
+    /**
+     * Adds a connected socket to the group. When the socket is closed, it is
+     * removed.
+     * @param socket the socket
+     * @return true if it was not in the group
+     */
+    public boolean add(@NotNull final Socket socket) {
+        socket.checkSocketCreated("add");
+        EventLoop loop = socket.channel.eventLoop();
+        Set<Socket> set = sockets.get(loop);
+        if(set == null) {
+            Set<Socket> newSet = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+            set = sockets.putIfAbsent(loop, newSet);
+            if(set == null) set = newSet;
+        }
+        if(!set.add(socket)) return false;
+        size.incrementAndGet();
+        socket.channel.closeFuture().addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) throws Exception {
+                remove(socket);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Removes the socket from the group.
+     * @param socket the socket
+     * @return true if it was in the group
+     */
+    public boolean remove(@NotNull Socket socket) {
+        if(socket.channel == null) return false;
+        Set<Socket> set = sockets.get(socket.channel.eventLoop());
+        if(set != null && set.remove(socket)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of sockets in the group
+     */
+    public int size() {
+        return size.get();
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Socket> iterator() {
+        List<Socket> all = new ArrayList<>(size());
+        for(Set<Socket> set : sockets.values()) all.addAll(set);
+        return Collections.unmodifiableList(all).iterator();
+    }
+
+    /**
+     * <p>Sends the readable bytes of {@code data} to every socket of the group. The
+     * data is put in a direct buffer once (if it is not already), from the allocator
+     * of the sockets, and every socket sends a duplicate of it, so the data must not
+     * be modified until the task is done. The reader index of {@code data} is not
+     * changed and it is not released.</p>
+     * <p>The {@link Future} completes when all the sockets have sent the data or
+     * failed to, with the sockets that failed and the cause. If all of them succeed,
+     * the map is empty. Sockets added while the data is being sent could not receive
+     * it.</p>
+     * @param data buffer with the data to be sent
+     * @return a {@link Future} with the failed sockets
+     */
+    public @NotNull Future<Map<Socket, Throwable>> broadcastAsync(@NotNull ByteBuf data) {
+        final long startTime = System.nanoTime();
+        final FutureImpl<Map<Socket, Throwable>> future = new FutureImpl<>(service, null);
+        final Map<Socket, Throwable> failed = new ConcurrentHashMap<>();
+        final AtomicInteger pending = new AtomicInteger(1);
+        final int bytes = data.readableBytes();
+        final ByteBuf payload;
+        if(data.isDirect()) {
+            payload = data.retainedDuplicate();
+        } else {
+            payload = allocator().directBuffer(bytes);
+            payload.writeBytes(data, data.readerIndex(), bytes);
+        }
+
+        final Procedure done = new Procedure() {
+            @Override
+            public void call() {
+                if(pending.decrementAndGet() == 0) future.postSuccess(failed);
+            }
+        };
+
+        for(Map.Entry<EventLoop, Set<Socket>> entry : sockets.entrySet()) {
+            final Set<Socket> set = entry.getValue();
+            if(set.isEmpty()) continue;
+            pending.incrementAndGet();
+            payload.retain();
+            try {
+                entry.getKey().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for(final Socket socket : set) {
+                                pending.incrementAndGet();
+                                socket.channel.writeAndFlush(payload.retainedDuplicate()).addListener(new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture f) throws Exception {
+                                        if(f.isSuccess()) socket.metrics.sent(bytes, startTime);
+                                        else failed.put(socket, f.cause());
+                                        done.call();
+                                    }
+                                });
+                            }
+                        } finally {
+                            payload.release();
+                            done.call();
+                        }
+                    }
+                });
+            } catch(RejectedExecutionException e) {
+                payload.release();
+                for(Socket socket : set) failed.put(socket, e);
+                done.call();
+            }
+        }
+
+        payload.release();
+        done.call();
+        return future;
+    }
+
+    /**
+     * @return the allocator of the sockets of the group, so the copy comes from the
+     * same pool they use; the default one if the group is empty
+     */
+    private ByteBufAllocator allocator() {
+        for(Set<Socket> set : sockets.values()) {
+            for(Socket socket : set) return socket.channel.alloc();
+        }
+        return ByteBufAllocator.DEFAULT;
+    }
+
+    /**
+     * Closes all the sockets of the group.
+     * @return a {@link Future} that completes when all are closed
+     */
+    public @NotNull Future<List<Void>> closeAsync() {
+        List<Future<Void>> futures = new ArrayList<>(size());
+        for(Socket socket : this) futures.add(socket.closeAsync());
+        return Futures.allOf(service, futures);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Metrics of a {@link Socket}. Everything recorded here is also added to the
+ * {@link IOServiceMetrics} of its {@link IOService}. Latencies are in nanoseconds.
+ * <p>
+ * The latency histograms of a socket are only recorded from the first time they
+ * are requested, so sockets nobody looks at don't use memory for them.
+ * @see Socket#metrics()
+ */
+public final class SocketMetrics {
+    private final Socket socket;
+    private final IOServiceMetrics service;
+    private final Counter bytesReceived = new Counter();
+    private final Counter bytesSent = new Counter();
+    private final Counter messagesReceived = new Counter();
+    private final Counter messagesSent = new Counter();
+    private final Counter discardedBytes = new Counter();
+    private volatile Histogram receiveLatency;
+    private volatile Histogram sendLatency;
+
+    SocketMetrics(@NotNull Socket socket, @NotNull IOServiceMetrics service) {
+        this.socket = socket;
+        this.service = service;
+    }
+
+    /**
+     * @return bytes received
+     */
+    public @NotNull Counter bytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return bytes sent
+     */
+    public @NotNull Counter bytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return reads (TCP) or datagrams (UDP) received
+     */
+    public @NotNull Counter messagesReceived() {
+        return messagesReceived;
+    }
+
+    /**
+     * @return send operations done
+     */
+    public @NotNull Counter messagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * @return received bytes discarded because there was no space to store them
+     */
+    public @NotNull Counter discardedBytes() {
+        return discardedBytes;
+    }
+
+    /**
+     * @return number of receive operations waiting for data
+     */
+    public int pendingReceives() {
+        return socket.pendingReceives();
+    }
+
+    /**
+     * @return time since a receive operation is requested until it gets the data
+     */
+    public @NotNull Histogram receiveLatency() {
+        if(receiveLatency == null) {
+            synchronized(this) {
+                if(receiveLatency == null) receiveLatency = new Histogram();
+            }
+        }
+        return receiveLatency;
+    }
+
+    /**
+     * @return time since a send operation is requested until it is written to the network
+     */
+    public @NotNull Histogram sendLatency() {
+        if(sendLatency == null) {
+            synchronized(this) {
+                if(sendLatency == null) sendLatency = new Histogram();
+            }
+        }
+        return sendLatency;
+    }
+
+    @SuppressWarnings("deprecation")
+    void received(int bytes) {
+        socket.bytesRead += bytes;
+        bytesReceived.add(bytes);
+        messagesReceived.increment();
+        service.bytesReceived.add(bytes);
+        service.messagesReceived.increment();
+    }
+
+    @SuppressWarnings("deprecation")
+    void sent(long bytes, long startTime) {
+        long latency = System.nanoTime() - startTime;
+        socket.bytesWrote += bytes;
+        bytesSent.add(bytes);
+        messagesSent.increment();
+        service.bytesSent.add(bytes);
+        service.messagesSent.increment();
+        service.sendLatency.record(latency);
+        Histogram histogram = sendLatency;
+        if(histogram != null) histogram.record(latency);
+    }
+
+    void receiveDone(long startTime) {
+        long latency = System.nanoTime() - startTime;
+        service.receiveLatency.record(latency);
+        Histogram histogram = receiveLatency;
+        if(histogram != null) histogram.record(latency);
+    }
+
+    void discarded(int bytes) {
+        discardedBytes.add(bytes);
+        service.discardedBytes.add(bytes);
+    }
+}
@@ -93,4 +93,28 @@ public class SocketUtil {
     public static Future<Long> readAsync(@NotNull Socket socket, @NotNull ByteBuf buffer) {
         return readAsync(socket, buffer, buffer.writableBytes());
     }
+
+    /**
+     * Connects two sockets, forwarding everything received in one of them to the
+     * other, as a proxy does. The data is not copied between them, and the reads of
+     * a socket are paused while the other one cannot send more. After this call,
+     * nothing can be received from the sockets using their methods. When one of them
+     * is closed, the other is closed after sending the pending data.
+     * @param a a connected socket
+     * @param b the other connected socket
+     * @return the {@link Relay}, with the number of bytes forwarded and a {@link Future}
+     * that completes when both sockets are closed
+     * @throws IllegalStateException if any of the sockets has receive operations pending
+     */
+    public static @NotNull Relay relay(@NotNull TCPSocket a, @NotNull TCPSocket b) {
+        a.checkSocketCreated("relay");
+        b.checkSocketCreated("relay");
+        if(a == b) throw new IllegalArgumentException("Cannot relay a socket to itself");
+        if(a.pendingReceives() != 0 || b.pendingReceives() != 0) {
+            throw new IllegalStateException("There are receive operations pending");
+        }
+        Relay relay = new Relay(a, b);
+        relay.start();
+        return relay;
+    }
 }
@@ -0,0 +1,54 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A receiver of items from a {@link Publisher}. All methods are called
+ * in order, never concurrently.
+ * @param <T> type of the items
+ */
+public interface Subscriber<T> {
+
+    /**
+     * Called before any other method, with the {@link Subscription} that
+     * allows to request items or cancel the subscription.
+     * @param subscription the subscription
+     */
+    void onSubscribe(@NotNull Subscription subscription);
+
+    /**
+     * Called with the next item. Is never called more times than the
+     * requested through {@link Subscription#request(long)}.
+     * @param item the item
+     */
+    void onNext(@NotNull T item);
+
+    /**
+     * Called when there's an error and no more items will be received.
+     * @param throwable the cause
+     */
+    void onError(@NotNull Throwable throwable);
+
+    /**
+     * Called when there's no more items to receive.
+     */
+    void onComplete();
+}
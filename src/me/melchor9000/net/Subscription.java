@@ -0,0 +1,38 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+/**
+ * Links a {@link Publisher} with its {@link Subscriber}.
+ */
+public interface Subscription {
+
+    /**
+     * Adds {@code n} items to the demand of the subscriber. If {@code n}
+     * is not positive, the subscriber will receive an {@link IllegalArgumentException}
+     * in its {@link Subscriber#onError(Throwable)}.
+     * @param n number of items to add to the demand
+     */
+    void request(long n);
+
+    /**
+     * Stops receiving items. Some items could be received after calling it.
+     */
+    void cancel();
+}
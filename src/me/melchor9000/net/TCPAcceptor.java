@@ -18,14 +18,23 @@
 
 package me.melchor9000.net;
 
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.AttributeKey;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * <p>
@@ -43,10 +52,25 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *     waiting to be accepted, or how many {@code accept()} calls are waiting for
  *     new connections, if the value is negative.
  * </p>
+ * <p>
+ *     To protect the server from connection floods, the acceptor can limit the open
+ *     connections, the connections waiting in the queue and the rate of new connections.
+ *     The connections over the limits are closed just after being accepted, before
+ *     creating any socket for them. See {@link #setMaxConnections(int)},
+ *     {@link #setMaxQueuedConnections(int)} and {@link #setAcceptRateLimit(double, int)}.
+ * </p>
  */
 public class TCPAcceptor extends Acceptor<TCPSocket> {
+    private static final AttributeKey<Admission> ADMISSION = AttributeKey.valueOf(TCPAcceptor.class, "admission");
     ConcurrentLinkedQueue<FutureImpl<TCPSocket>> accepts;
     ConcurrentLinkedQueue<TCPSocket> sockets;
+    private volatile long readerIdleTime, writerIdleTime, allIdleTime;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger undeliveredConnections = new AtomicInteger();
+    private volatile int maxConnections, maxQueuedConnections;
+    private volatile double acceptRate;
+    private volatile int acceptBurst;
+    private volatile boolean pauseWhenOverloaded;
 
     /**
      * Creates a TCP acceptor for server applications.
@@ -70,25 +94,50 @@ public class TCPAcceptor extends Acceptor<TCPSocket> {
     private void cnstr() {
         bootstrap
                 .channel(NioServerSocketChannel.class)
+                .handler(new AdmissionControl())
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel ch) throws Exception {
                         TCPSocket socket = createSocketForImplementation(ch);
-                        if(!accepts.isEmpty()) {
-                            accepts.poll().postSuccess(socket);
-                        } else {
-                            if(onConnection != null) {
-                                onConnection.call(socket);
-                            } else {
-                                sockets.add(socket);
-                            }
-                        }
+                        metrics.accepted();
+                        if(readerIdleTime != 0 || writerIdleTime != 0 || allIdleTime != 0)
+                            socket.setIdleTimeouts(readerIdleTime, writerIdleTime, allIdleTime);
+                        connectionAccepted(socket);
                     }
                 });
         accepts = new ConcurrentLinkedQueue<>();
         sockets = new ConcurrentLinkedQueue<>();
     }
 
+    /**
+     * Called when a new connection is accepted, with its socket. By default, the
+     * socket is delivered immediately.
+     * @param socket socket of the new connection
+     * @see #deliver(TCPSocket)
+     */
+    void connectionAccepted(@NotNull TCPSocket socket) {
+        deliver(socket);
+    }
+
+    /**
+     * Gives the socket to the first {@code accept} call waiting, to the listener
+     * or stores it in the queue; in this order.
+     * @param socket socket of a new connection
+     */
+    final void deliver(@NotNull TCPSocket socket) {
+        Admission admission = socket.channel.attr(ADMISSION).get();
+        if(admission != null) admission.delivered();
+        if(!accepts.isEmpty()) {
+            accepts.poll().postSuccess(socket);
+        } else {
+            if(onConnection != null) {
+                onConnection.call(socket);
+            } else {
+                sockets.add(socket);
+            }
+        }
+    }
+
     protected @NotNull TCPSocket createSocketForImplementation(@NotNull SocketChannel ch) throws IOException {
         return new TCPSocket(this, ch);
     }
@@ -123,6 +172,71 @@ public class TCPAcceptor extends Acceptor<TCPSocket> {
         }
     }
 
+    /**
+     * Sets the idle timeouts for every new connection, so the idle clients are closed
+     * by the server. Already accepted connections are not affected.
+     * @param readerIdleTime milliseconds without receiving data, or 0
+     * @param writerIdleTime milliseconds without sending data, or 0
+     * @param allIdleTime milliseconds without receiving nor sending data, or 0
+     * @see TCPSocket#setIdleTimeouts(long, long, long)
+     */
+    public void setChildIdleTimeouts(long readerIdleTime, long writerIdleTime, long allIdleTime) {
+        if(readerIdleTime < 0 || writerIdleTime < 0 || allIdleTime < 0)
+            throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        this.readerIdleTime = readerIdleTime;
+        this.writerIdleTime = writerIdleTime;
+        this.allIdleTime = allIdleTime;
+    }
+
+    /**
+     * Limits the number of connections accepted that can be open at the same time.
+     * New connections over the limit are rejected.
+     * @param maxConnections maximum of open connections, or 0 for no limit
+     */
+    public void setMaxConnections(int maxConnections) {
+        if(maxConnections < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Limits the number of connections accepted that are waiting for an {@code accept}
+     * call in the queue. New connections when the queue is full are rejected. Has no
+     * effect when a connection listener is set, because nothing is queued. The
+     * connections accepted but not delivered yet, as the ones doing the handshake with
+     * {@link SSLAcceptor#setDeliverAfterHandshake(boolean)}, count as queued.
+     * @param maxQueuedConnections maximum of connections in the queue, or 0 for no limit
+     */
+    public void setMaxQueuedConnections(int maxQueuedConnections) {
+        if(maxQueuedConnections < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        this.maxQueuedConnections = maxQueuedConnections;
+    }
+
+    /**
+     * Limits the rate of new connections, using a token bucket: {@code burst}
+     * connections can be accepted at once, and then {@code connectionsPerSecond}
+     * every second. New connections over the rate are rejected.
+     * @param connectionsPerSecond sustained rate of new connections, or 0 for no limit
+     * @param burst maximum connections accepted at once, at least 1
+     */
+    public void setAcceptRateLimit(double connectionsPerSecond, int burst) {
+        if(connectionsPerSecond < 0) throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        if(burst < 1) throw new IllegalArgumentException("burst must be at least 1");
+        this.acceptBurst = burst;
+        this.acceptRate = connectionsPerSecond;
+    }
+
+    /**
+     * When enabled, after rejecting a connection because of any limit, the acceptor
+     * stops accepting connections until the limits allow new ones again. The new
+     * clients wait in the backlog of the operating system instead of being
+     * rejected one by one, which costs less under a flood. The backlog can be
+     * changed with the option {@link io.netty.channel.ChannelOption#SO_BACKLOG}.
+     * @param pause true to stop accepting when overloaded
+     */
+    public void setPauseWhenOverloaded(boolean pause) {
+        this.pauseWhenOverloaded = pause;
+    }
+
     /**
      * @return if the value is positive, tells the number of pending
      * connections to be accepted; if negative, tells the number of
@@ -131,4 +245,105 @@ public class TCPAcceptor extends Acceptor<TCPSocket> {
     public int pendingConnections() {
         return sockets.size() - accepts.size();
     }
+
+    @Override
+    int openConnections() {
+        return openConnections.get();
+    }
+
+    @Override
+    int queuedConnections() {
+        return sockets.size();
+    }
+
+    @Override
+    int pendingAccepts() {
+        return accepts.size();
+    }
+
+    /**
+     * Handler of the server channel that receives the accepted channels before they
+     * are registered, and closes the ones over the limits. Runs in the event loop of
+     * the server channel, so the token bucket needs no synchronization.
+     */
+    private class AdmissionControl extends ChannelInboundHandlerAdapter {
+        private static final long PAUSE_CHECK_INTERVAL = 10;
+        private double tokens = -1;
+        private long lastRefill;
+        private boolean paused;
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
+            Channel child = (Channel) msg;
+            Counter reason = limitReached(true);
+            if(reason == null) {
+                openConnections.incrementAndGet();
+                undeliveredConnections.incrementAndGet();
+                Admission admission = new Admission();
+                child.attr(ADMISSION).set(admission);
+                child.closeFuture().addListener(admission);
+                ctx.fireChannelRead(msg);
+            } else {
+                metrics.rejected(reason);
+                child.unsafe().closeForcibly();
+                if(pauseWhenOverloaded && !paused) pause(ctx);
+            }
+        }
+
+        /**
+         * @param take if true, and the connection is admitted, takes a token from the bucket
+         * @return the counter of the limit that rejects a new connection now, or null if is admitted
+         */
+        private Counter limitReached(boolean take) {
+            int maxConnections = TCPAcceptor.this.maxConnections;
+            if(maxConnections != 0 && openConnections.get() >= maxConnections) return metrics.rejectedByConnectionLimit;
+            int maxQueued = maxQueuedConnections;
+            if(maxQueued != 0 && onConnection == null && sockets.size() + undeliveredConnections.get() - accepts.size() >= maxQueued) {
+                return metrics.rejectedByQueueLimit;
+            }
+            if(acceptRate != 0) {
+                long now = System.nanoTime();
+                if(tokens < 0) tokens = acceptBurst;
+                else tokens = Math.min(acceptBurst, tokens + (now - lastRefill) * acceptRate / 1e9);
+                lastRefill = now;
+                if(tokens < 1) return metrics.rejectedByRateLimit;
+                if(take) tokens--;
+            }
+            return null;
+        }
+
+        private void pause(final ChannelHandlerContext ctx) {
+            paused = true;
+            ctx.channel().config().setAutoRead(false);
+            ctx.executor().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if(!ctx.channel().isOpen()) return;
+                    if(limitReached(false) != null) {
+                        ctx.executor().schedule(this, PAUSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                    } else {
+                        paused = false;
+                        ctx.channel().config().setAutoRead(true);
+                    }
+                }
+            }, PAUSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Accounts an admitted connection until it is delivered and until it is closed.
+     */
+    private final class Admission implements ChannelFutureListener {
+        private final AtomicBoolean undelivered = new AtomicBoolean(true);
+
+        private void delivered() {
+            if(undelivered.compareAndSet(true, false)) undeliveredConnections.decrementAndGet();
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            openConnections.decrementAndGet();
+            delivered();
+        }
+    }
 }
@@ -23,12 +23,22 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.GenericFutureListener;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>TCP Socket for connexions to servers.</p>
@@ -61,13 +71,27 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *     Is possible to be notified when the socket is closed, by you or by the remote endpoint,
  *     using {@link #onClose()}, or the synchronous version {@link #waitUntilClose()}.
  * </p>
+ * <p>
+ *     Instead of calling {@code receive} operations, the received data can be consumed as
+ *     a stream using the {@link Publisher} returned by {@link #publisher()}.
+ * </p>
+ * <p>
+ *     Stalled connections can be closed automatically by configuring idle timeouts with
+ *     {@link #setIdleTimeouts(long, long, long)}, instead of setting a timeout on every
+ *     {@code receive} operation.
+ * </p>
  */
 public class TCPSocket extends Socket {
+    private static final int FILE_CHUNK_SIZE = 16 * 1024;
     protected SocketChannel socket;
     private ByteBuf readBuffer;
     private ConcurrentLinkedQueue<ReadOperation> readOperations;
+    private volatile ReadPublisher publisher;
+    private FileReceive fileReceive;
+    private Relay relay;
     final ReadManager readManager;
     private volatile boolean isClosed = false;
+    private volatile long readerIdleTime, writerIdleTime, allIdleTime;
 
     /**
      * Creates a new TCP Socket
@@ -163,6 +187,71 @@ public class TCPSocket extends Socket {
         return future;
     }
 
+    /**
+     * Receives {@code length} bytes and writes them into {@code file}, starting at
+     * {@code position}. See {@link #receiveToFileAsync(FileChannel, long, long)}.
+     * @param file file where to write the data
+     * @param position position of the file where the first byte is written
+     * @param length number of bytes to receive
+     * @return bytes received
+     * @throws Throwable if something bad happened
+     */
+    public long receiveToFile(@NotNull FileChannel file, long position, long length) throws Throwable {
+        checkSocketCreated("receiveToFile");
+        return receiveToFileAsync(file, position, length).getValue();
+    }
+
+    /**
+     * <p>Receives {@code length} bytes and writes them into {@code file}, starting at
+     * {@code position}. The data is written to the file as it arrives, from the buffer
+     * where the transport has read it, without copying it into an intermediate buffer.
+     * The file channel is not closed nor its position changed.</p>
+     * <p>The {@link Future} completes once, when all the bytes have been written. If the
+     * connection is closed before, it fails with an {@link IOException}. Data received
+     * before the call is written first. Only one receive to file can be done at the
+     * same time, and it cannot be mixed with pending {@link #receiveAsync(ByteBuf, int)}
+     * calls.</p>
+     * @param file file where to write the data
+     * @param position position of the file where the first byte is written
+     * @param length number of bytes to receive
+     * @return a {@link Future} with the bytes received
+     */
+    public @NotNull Future<Long> receiveToFileAsync(@NotNull FileChannel file, long position, long length) {
+        checkSocketCreated("receiveToFileAsync");
+        checkFileRange(position, length);
+        if(!readOperations.isEmpty()) throw new IllegalStateException("There are receive operations pending");
+        final FileReceive receive[] = new FileReceive[1];
+        final FutureImpl<Long> future = createFuture(new Procedure() {
+            @Override
+            public void call() {
+                socket.eventLoop().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(fileReceive == receive[0]) fileReceive = null;
+                    }
+                });
+            }
+        });
+
+        receive[0] = new FileReceive(future, file, position, length);
+        socket.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                if(future.isDone()) return;
+                if(fileReceive != null) {
+                    future.postError(new IllegalStateException("There is a receive to file in progress"));
+                } else if(isClosed) {
+                    future.postError(new IOException("End of stream"));
+                } else {
+                    fileReceive = receive[0];
+                    fileReceive.write(readBuffer);
+                    if(readBuffer.readableBytes() == 0) readBuffer.readerIndex(0).writerIndex(0);
+                }
+            }
+        });
+        return future;
+    }
+
     /**
      * Ends the output stream of this connection, sending before any data pending
      * to send. After shutdown, any attempt to send anything will fail with an
@@ -170,7 +259,7 @@ public class TCPSocket extends Socket {
      */
     public void shutdownOutput() {
         checkSocketCreated("shutdownOutput");
-        socket.shutdownOutput().syncUninterruptibly();
+        Blocking.sync(socket.shutdownOutput());
     }
 
     /**
@@ -192,7 +281,7 @@ public class TCPSocket extends Socket {
      */
     public void shutdownInput() {
         checkSocketCreated("shutdownInput");
-        socket.shutdownInput().syncUninterruptibly();
+        Blocking.sync(socket.shutdownInput());
     }
 
     /**
@@ -215,7 +304,7 @@ public class TCPSocket extends Socket {
      */
     public void shutdown() {
         checkSocketCreated("shutdown");
-        socket.shutdown().syncUninterruptibly();
+        Blocking.sync(socket.shutdown());
     }
 
     /**
@@ -230,6 +319,284 @@ public class TCPSocket extends Socket {
         return createFuture(socket.shutdown());
     }
 
+    /**
+     * Sends the whole file {@code file}. See {@link #sendFileAsync(FileChannel, long, long)}.
+     * @param file file to send
+     * @return bytes sent
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if it is interrupted
+     */
+    public long sendFile(@NotNull File file) throws IOException, InterruptedException {
+        return sendFile(file, 0, file.length());
+    }
+
+    /**
+     * Sends {@code length} bytes of the file {@code file}, starting at {@code offset}.
+     * See {@link #sendFileAsync(FileChannel, long, long)}.
+     * @param file file to send
+     * @param offset position of the first byte to send
+     * @param length number of bytes to send
+     * @return bytes sent
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if it is interrupted
+     */
+    public long sendFile(@NotNull File file, long offset, long length) throws IOException, InterruptedException {
+        FileChannel fileChannel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            return sendFile(fileChannel, offset, length);
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+    /**
+     * Sends {@code length} bytes of the file {@code file}, starting at {@code offset}.
+     * See {@link #sendFileAsync(FileChannel, long, long)}.
+     * @param file file to send
+     * @param offset position of the first byte to send
+     * @param length number of bytes to send
+     * @return bytes sent
+     * @throws IOException if the file cannot be read or is shorter than {@code offset + length}
+     * @throws InterruptedException if it is interrupted
+     */
+    public long sendFile(@NotNull FileChannel file, long offset, long length) throws IOException, InterruptedException {
+        checkSocketCreated("sendFile");
+        checkFileRange(offset, length);
+        long startTime = System.nanoTime();
+        Blocking.syncInterruptibly(socket.writeAndFlush(fileMessage(file, offset, length, false)));
+        metrics.sent(length, startTime);
+        return length;
+    }
+
+    /**
+     * Sends the whole file {@code file}. The file is opened when the send starts
+     * and closed when it ends. See {@link #sendFileAsync(FileChannel, long, long)}.
+     * @param file file to send
+     * @return a {@link Future} with the bytes sent
+     */
+    public @NotNull Future<Long> sendFileAsync(@NotNull File file) {
+        return sendFileAsync(file, 0, file.length());
+    }
+
+    /**
+     * Sends {@code length} bytes of the file {@code file}, starting at {@code offset}.
+     * The file is opened when the send starts and closed when it ends. See
+     * {@link #sendFileAsync(FileChannel, long, long)}.
+     * @param file file to send
+     * @param offset position of the first byte to send
+     * @param length number of bytes to send
+     * @return a {@link Future} with the bytes sent
+     */
+    public @NotNull Future<Long> sendFileAsync(@NotNull File file, long offset, long length) {
+        checkSocketCreated("sendFileAsync");
+        checkFileRange(offset, length);
+        FileChannel fileChannel = null;
+        try {
+            fileChannel = new RandomAccessFile(file, "r").getChannel();
+            return sendFileMessage(fileMessage(fileChannel, offset, length, true), length);
+        } catch(IOException e) {
+            if(fileChannel != null) try { fileChannel.close(); } catch(IOException ignore) {}
+            FutureImpl<Long> future = createFuture((Procedure) null);
+            future.postError(e);
+            return future;
+        }
+    }
+
+    /**
+     * <p>Sends {@code length} bytes of the file {@code file}, starting at {@code offset}.
+     * The file channel is not closed nor its position changed, so it can be shared by
+     * many sends at the same time.</p>
+     * <p>In plain TCP sockets, the file is sent using {@code sendfile} (or the
+     * equivalent of the OS): the data goes from the file to the network inside the
+     * kernel, without being copied into the memory of the application. With SSL the
+     * data must be ciphered, so it is read in chunks and sent as they are ciphered,
+     * without reading the whole file in memory.</p>
+     * <p>If the file is shorter than {@code offset + length}, the {@link Future} fails
+     * with an {@link EOFException} and nothing is sent.</p>
+     * @param file file to send
+     * @param offset position of the first byte to send
+     * @param length number of bytes to send
+     * @return a {@link Future} with the bytes sent
+     */
+    public @NotNull Future<Long> sendFileAsync(@NotNull FileChannel file, long offset, long length) {
+        checkSocketCreated("sendFileAsync");
+        checkFileRange(offset, length);
+        try {
+            return sendFileMessage(fileMessage(file, offset, length, false), length);
+        } catch(IOException e) {
+            FutureImpl<Long> future = createFuture((Procedure) null);
+            future.postError(e);
+            return future;
+        }
+    }
+
+    /**
+     * Tells if the files can be sent using {@code sendfile}, as a {@link FileRegion}.
+     * When the data is transformed in the pipeline, as when it is ciphered, they
+     * are sent in chunks.
+     * @return true if a {@link FileRegion} can be written to the channel
+     */
+    boolean supportsFileRegion() {
+        return true;
+    }
+
+    private Object fileMessage(FileChannel file, long offset, long length, final boolean closeFile) throws IOException {
+        checkFileRange(file, offset, length);
+        if(supportsFileRegion()) {
+            return new DefaultFileRegion(file, offset, length) {
+                @Override
+                protected void deallocate() {
+                    if(closeFile) super.deallocate();
+                }
+            };
+        }
+
+        synchronized(this) {
+            if(socket.pipeline().get(ChunkedWriteHandler.class) == null) {
+                //After the SSL handler, so the chunks are ciphered
+                socket.pipeline().addBefore("readManager", "chunkedWriter", new ChunkedWriteHandler());
+            }
+        }
+        return new FileChunks(file, offset, length, closeFile);
+    }
+
+    /**
+     * Reads a portion of a file in chunks, for {@link ChunkedWriteHandler}. Unlike
+     * {@link io.netty.handler.stream.ChunkedNioFile}, the reads are done by position,
+     * so the position of the channel is not changed and it can be shared.
+     */
+    private static class FileChunks implements ChunkedInput<ByteBuf> {
+        private final FileChannel file;
+        private final long startOffset, endOffset;
+        private final boolean closeFile;
+        private long offset;
+
+        private FileChunks(FileChannel file, long offset, long length, boolean closeFile) {
+            this.file = file;
+            this.startOffset = this.offset = offset;
+            this.endOffset = offset + length;
+            this.closeFile = closeFile;
+        }
+
+        @Override
+        public boolean isEndOfInput() throws Exception {
+            return offset >= endOffset || !file.isOpen();
+        }
+
+        @Override
+        public void close() throws Exception {
+            if(closeFile) file.close();
+        }
+
+        @Deprecated
+        @Override
+        public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+            return readChunk(ctx.alloc());
+        }
+
+        @Override
+        public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+            if(offset >= endOffset) return null;
+            int size = (int) Math.min(FILE_CHUNK_SIZE, endOffset - offset);
+            ByteBuf chunk = allocator.buffer(size);
+            boolean release = true;
+            try {
+                int read = 0;
+                while(read < size) {
+                    int bytes = chunk.writeBytes(file, offset + read, size - read);
+                    if(bytes < 0) throw new EOFException("The file is shorter than the length to send");
+                    read += bytes;
+                }
+                offset += read;
+                release = false;
+                return chunk;
+            } finally {
+                if(release) chunk.release();
+            }
+        }
+
+        @Override
+        public long length() {
+            return endOffset - startOffset;
+        }
+
+        @Override
+        public long progress() {
+            return offset - startOffset;
+        }
+    }
+
+    private Future<Long> sendFileMessage(Object message, final long length) {
+        final long startTime = System.nanoTime();
+        final FutureImpl<Long> future = createFuture((Procedure) null);
+        socket.writeAndFlush(message).addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture f) throws Exception {
+                if(f.isSuccess()) {
+                    metrics.sent(length, startTime);
+                    future.postSuccess(length);
+                } else {
+                    future.postError(f.cause());
+                }
+            }
+        });
+        return future;
+    }
+
+    private static void checkFileRange(long offset, long length) {
+        if(offset < 0 || length < 0) throw new IllegalArgumentException("offset and length must be positive or 0");
+    }
+
+    private static void checkFileRange(FileChannel file, long offset, long length) throws IOException {
+        //A region past the end would never complete with sendfile, so both paths fail the same way here
+        if(offset + length > file.size()) throw new EOFException("The file is shorter than the range to send");
+    }
+
+    /**
+     * <p>Returns a {@link Publisher} that emits the data received by this socket,
+     * in the same {@link ByteBuf}{@code s} that netty has read, without any copy or
+     * {@link Future}. The subscriber owns every received {@link ByteBuf} and must
+     * {@link ByteBuf#release() release} it when done with it.</p>
+     * <p>When the subscriber has no demand, the socket stops reading from the network
+     * until more items are requested. Data that was stored in the intermediary buffer
+     * before subscribing is the first item received. While there's a subscriber,
+     * {@code receive} operations won't get any data. When the connection is closed
+     * by any side, {@link Subscriber#onComplete()} is called.</p>
+     * @return the publisher of received data for this socket
+     */
+    public @NotNull Publisher<ByteBuf> publisher() {
+        checkSocketCreated("publisher");
+        if(publisher == null) publisher = new ReadPublisher();
+        return publisher;
+    }
+
+    /**
+     * <p>Configures the idle timeouts of the connection. When no data has been received in
+     * {@code readerIdleTime} milliseconds, nothing has been sent in {@code writerIdleTime}
+     * milliseconds, or neither in {@code allIdleTime} milliseconds, the connection is closed.
+     * Any pending {@code receive} operation fails with a {@link SocketTimeoutException}, as
+     * does the subscriber of the {@link #publisher()}.</p>
+     * <p>The timeouts are checked by a handler in the pipeline of the connection, so they
+     * don't cost anything to the read or write operations. A value of 0 disables that
+     * timeout. If the socket is not connected yet, they are applied when connects.</p>
+     * @param readerIdleTime milliseconds without receiving data, or 0
+     * @param writerIdleTime milliseconds without sending data, or 0
+     * @param allIdleTime milliseconds without receiving nor sending data, or 0
+     */
+    public void setIdleTimeouts(long readerIdleTime, long writerIdleTime, long allIdleTime) {
+        if(readerIdleTime < 0 || writerIdleTime < 0 || allIdleTime < 0)
+            throw new IllegalArgumentException("Only positive or 0 values are accepted");
+        this.readerIdleTime = readerIdleTime;
+        this.writerIdleTime = writerIdleTime;
+        this.allIdleTime = allIdleTime;
+        if(socket != null) idleTimeoutsChanged();
+    }
+
+    @Override
+    int pendingReceives() {
+        return readOperations.size();
+    }
+
     /**
      * @return the number of bytes that can be read, or -1 if EOF
      */
@@ -242,7 +609,7 @@ public class TCPSocket extends Socket {
      * the wait.
      */
     public void waitUntilClose() {
-        socket.closeFuture().syncUninterruptibly();
+        Blocking.await(socket.closeFuture());
     }
 
     /**
@@ -276,17 +643,38 @@ public class TCPSocket extends Socket {
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             ByteBuf buff = (ByteBuf) msg;
+            metrics.received(buff.readableBytes());
+            if(relay != null) {
+                relay.forward(TCPSocket.this, buff);
+                fireReceivedData();
+                return;
+            }
+
+            if(fileReceive != null) {
+                fileReceive.write(buff);
+                if(buff.readableBytes() == 0) {
+                    buff.release();
+                    fireReceivedData();
+                    return;
+                }
+            }
+
+            if(publisher != null && publisher.hasSubscriber()) {
+                publisher.offer(buff);
+                fireReceivedData();
+                return;
+            }
+
             try {
-                bytesRead += buff.readableBytes();
                 if(readBuffer.writerIndex() < readBuffer.maxCapacity() && readBuffer.maxCapacity() - readBuffer.writerIndex() <= buff.readableBytes()) {
-                    System.out.println("Discarded " + (buff.readableBytes() - readBuffer.writableBytes()) + " bytes");
+                    metrics.discarded(buff.readableBytes() - readBuffer.writableBytes());
                     readBuffer.writeBytes(buff, 0, readBuffer.writableBytes());
                     checkAndSendData();
                 } else if(readBuffer.maxCapacity() - readBuffer.writerIndex() > buff.readableBytes()) {
                     readBuffer.writeBytes(buff);
                     checkAndSendData();
                 } else {
-                    System.out.println("oberflou");
+                    metrics.discarded(buff.readableBytes());
                 }
             } finally {
                 buff.release();
@@ -300,9 +688,52 @@ public class TCPSocket extends Socket {
             ctx.read();
         }
 */
+        @Override
+        public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+            if(relay != null) relay.flush(TCPSocket.this);
+            super.channelReadComplete(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+            if(relay != null && ctx.channel().isWritable()) relay.writable(TCPSocket.this);
+            super.channelWritabilityChanged(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if(relay != null) {
+                relay.closed(TCPSocket.this);
+                relay = null;
+            }
+            if(fileReceive != null) fileReceive.failed(new IOException("End of stream"));
+            if(publisher != null) publisher.complete();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if(evt instanceof IdleStateEvent) {
+                SocketTimeoutException e;
+                switch(((IdleStateEvent) evt).state()) {
+                    case READER_IDLE: e = new SocketTimeoutException("Nothing received in " + readerIdleTime + "ms"); break;
+                    case WRITER_IDLE: e = new SocketTimeoutException("Nothing sent in " + writerIdleTime + "ms"); break;
+                    default: e = new SocketTimeoutException("Connection idle for " + allIdleTime + "ms");
+                }
+
+                ReadOperation op;
+                while((op = readOperations.poll()) != null) op.cbk.postError(e);
+                if(fileReceive != null) fileReceive.failed(e);
+                if(publisher != null) publisher.error(e);
+                ctx.close();
+            } else {
+                super.userEventTriggered(ctx, evt);
+            }
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-            cause.printStackTrace();
+            if(publisher == null || !publisher.error(cause)) cause.printStackTrace();
         }
 
         private void checkAndSendData() throws Exception {
@@ -310,10 +741,12 @@ public class TCPSocket extends Socket {
                 ReadOperation op = readOperations.poll();
                 if(op.bytesToRead <= readBuffer.readableBytes()) {
                     readBuffer.readBytes(op.buffer, op.bytesToRead);
+                    metrics.receiveDone(op.startTime);
                     op.cbk.postSuccess((long) op.bytesToRead);
                 } else {
                     long a = readBuffer.readableBytes();
                     readBuffer.readBytes(op.buffer, (int) a);
+                    metrics.receiveDone(op.startTime);
                     op.cbk.postSuccess(a);
                 }
             }
@@ -328,10 +761,30 @@ public class TCPSocket extends Socket {
         }
     }
 
+    private class ReadPublisher extends ChannelPublisher<ByteBuf> {
+        private ReadPublisher() {
+            super(channel);
+        }
+
+        @Override
+        protected void subscribed() {
+            if(readBuffer.readableBytes() != 0) {
+                offer(readBuffer.copy());
+                readBuffer.readerIndex(0).writerIndex(0);
+            }
+        }
+
+        @Override
+        protected void release(@NotNull ByteBuf item) {
+            item.release();
+        }
+    }
+
     private class ReadOperation {
         private FutureImpl<Long> cbk;
         private int bytesToRead;
         private ByteBuf buffer;
+        private final long startTime = System.nanoTime();
 
         private ReadOperation(FutureImpl<Long> cbk, int bytesToRead, ByteBuf buffer) {
             this.cbk = cbk;
@@ -340,9 +793,110 @@ public class TCPSocket extends Socket {
         }
     }
 
+    /**
+     * A receive to a file in progress. Only used inside the event loop.
+     */
+    private class FileReceive {
+        private final FutureImpl<Long> cbk;
+        private final FileChannel file;
+        private final long length;
+        private long position;
+        private long remaining;
+        private final long startTime = System.nanoTime();
+
+        private FileReceive(FutureImpl<Long> cbk, FileChannel file, long position, long length) {
+            this.cbk = cbk;
+            this.file = file;
+            this.position = position;
+            this.length = length;
+            this.remaining = length;
+        }
+
+        /**
+         * Writes into the file as many bytes as needed from {@code buff}, leaving
+         * the rest in it. Completes the task when all bytes are written.
+         */
+        private void write(ByteBuf buff) {
+            try {
+                int bytes = (int) Math.min(remaining, buff.readableBytes());
+                while(bytes > 0) {
+                    int written = buff.readBytes(file, position, bytes);
+                    position += written;
+                    remaining -= written;
+                    bytes -= written;
+                }
+            } catch(IOException e) {
+                failed(e);
+                return;
+            }
+
+            if(remaining == 0) {
+                fileReceive = null;
+                metrics.receiveDone(startTime);
+                cbk.trySuccess(length);
+            }
+        }
+
+        private void failed(Throwable cause) {
+            fileReceive = null;
+            cbk.tryError(cause);
+        }
+    }
+
+    /**
+     * Takes the data received but not read yet. Must be called from the event
+     * loop of the socket.
+     * @return the data, or null if there is nothing
+     */
+    ByteBuf takeReceivedData() {
+        if(readBuffer.readableBytes() == 0) return null;
+        ByteBuf data = readBuffer.readBytes(readBuffer.readableBytes());
+        readBuffer.readerIndex(0).writerIndex(0);
+        return data;
+    }
+
+    /**
+     * Makes this socket part of the {@code relay}. Everything received after, and
+     * the data received but not read before, is forwarded to the other socket.
+     * @param relay the relay
+     */
+    void startRelay(final Relay relay) {
+        socket.eventLoop().execute(new Runnable() {
+            @Override
+            public void run() {
+                if(!socket.isActive()) {
+                    relay.closed(TCPSocket.this);
+                    return;
+                }
+
+                TCPSocket.this.relay = relay;
+                if(readBuffer.readableBytes() != 0) {
+                    relay.forward(TCPSocket.this, readBuffer.readBytes(readBuffer.readableBytes()));
+                    relay.flush(TCPSocket.this);
+                    readBuffer.readerIndex(0).writerIndex(0);
+                }
+                socket.config().setAutoRead(true);
+            }
+        });
+    }
+
+    private void idleTimeoutsChanged() {
+        ChannelPipeline pipeline = socket.pipeline();
+        boolean enabled = readerIdleTime != 0 || writerIdleTime != 0 || allIdleTime != 0;
+        IdleStateHandler handler = enabled ? new IdleStateHandler(readerIdleTime, writerIdleTime, allIdleTime, TimeUnit.MILLISECONDS) : null;
+        //The handler goes first, so the SSL records are also considered activity
+        if(pipeline.get("idle") != null) {
+            if(enabled) pipeline.replace("idle", "idle", handler);
+            else pipeline.remove("idle");
+        } else if(enabled) {
+            pipeline.addFirst("idle", handler);
+        }
+    }
+
     private void channelCreated() {
         socket = (SocketChannel) channel;
         if(socket != null) {
+            if(readerIdleTime != 0 || writerIdleTime != 0 || allIdleTime != 0) idleTimeoutsChanged();
             socket.closeFuture().addListener(new GenericFutureListener<io.netty.util.concurrent.Future<? super Void>>() {
                 @Override
                 public void operationComplete(io.netty.util.concurrent.Future<? super Void> future) throws Exception {
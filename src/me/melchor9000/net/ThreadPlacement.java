@@ -0,0 +1,171 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import io.netty.channel.SelectStrategy;
+import io.netty.util.IntSupplier;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ *     Tells how the threads of the event loops of an {@link IOService} are created:
+ *     their names, the CPUs where they can run and if they poll for I/O before
+ *     sleeping. By default, the threads have the netty names, can run in any CPU and
+ *     sleep as soon as there's nothing to do. Override the methods to change it, or use
+ *     {@link #pinned(String, int...)}.
+ * </p>
+ * <p>
+ *     Pinning each event loop to its own CPU (better if it is isolated from the
+ *     scheduler, with the {@code isolcpus} kernel option) avoids the migrations
+ *     between CPUs, and with them, a source of latency spikes.
+ * </p>
+ * @see IOService#IOService(int, ThreadPlacement)
+ */
+public class ThreadPlacement {
+
+    /**
+     * Creates a placement where the thread {@code i} is named {@code name-i} and
+     * pinned to the CPU {@code cpus[i % cpus.length]}.
+     * @param name prefix for the names of the threads
+     * @param cpus the CPUs for the event loops, usually as many as threads
+     * @return the placement
+     */
+    public static @NotNull ThreadPlacement pinned(@NotNull final String name, @NotNull final int... cpus) {
+        if(cpus.length == 0) throw new IllegalArgumentException("At least one CPU is needed");
+        final int[] copy = cpus.clone();
+        return new ThreadPlacement() {
+            @Override
+            public @Nullable String threadName(int index) {
+                return name + "-" + index;
+            }
+
+            @Override
+            public @Nullable int[] cpus(int index) {
+                return new int[] { copy[index % copy.length] };
+            }
+        };
+    }
+
+    /**
+     * @param index index of the thread, in order of creation
+     * @return the name for the thread, or null to use the default
+     */
+    public @Nullable String threadName(int index) {
+        return null;
+    }
+
+    /**
+     * @param index index of the thread, in order of creation
+     * @return the CPUs where the thread can run, or null to let it run in any CPU
+     */
+    public @Nullable int[] cpus(int index) {
+        return null;
+    }
+
+    /**
+     * Returns how many times an event loop with nothing to do checks again for
+     * I/O events without waiting, before sleeping until something happens. Spinning
+     * reduces the latency to wake up, at the cost of using the CPU all the time, so
+     * it is only worth with pinned threads in dedicated CPUs.
+     * @return number of checks before sleeping, or 0 to sleep directly
+     */
+    public int busyPollIterations() {
+        return 0;
+    }
+
+    /**
+     * Called in the new thread of an event loop, before it starts running. By default,
+     * pins the thread to the {@link #cpus(int)}, if any. Override it to use an affinity
+     * library instead.
+     * @param index index of the thread, in order of creation
+     * @param thread the thread, which is the current thread
+     */
+    public void threadStarted(int index, @NotNull Thread thread) {
+        int[] cpus = cpus(index);
+        if(cpus != null && !pinCurrentThread(cpus)) {
+            System.err.println("Could not pin the thread " + thread.getName() + " to the CPUs " + cpuList(cpus));
+        }
+    }
+
+    /**
+     * Pins the current thread to the CPUs. Java has no API for it, so it is only
+     * supported in Linux, using the {@code taskset} tool on the id of the thread
+     * found in {@code /proc/thread-self}.
+     * @param cpus the CPUs where the thread can run
+     * @return true if the thread was pinned
+     */
+    protected static boolean pinCurrentThread(@NotNull int[] cpus) {
+        Path self = Paths.get("/proc/thread-self");
+        if(!Files.isSymbolicLink(self)) return false;
+        try {
+            String tid = Files.readSymbolicLink(self).getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList(cpus), tid)
+                    .redirectErrorStream(true)
+                    .start();
+            try(InputStream output = process.getInputStream()) {
+                byte[] buff = new byte[256];
+                while(output.read(buff) != -1);
+            }
+            return process.waitFor() == 0;
+        } catch(IOException e) {
+            return false;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String cpuList(int[] cpus) {
+        StringBuilder list = new StringBuilder();
+        for(int cpu : cpus) {
+            if(list.length() != 0) list.append(',');
+            list.append(cpu);
+        }
+        return list.toString();
+    }
+
+    /**
+     * Before sleeping in the selector, checks for I/O events some times without waiting.
+     */
+    static final class BusyPollSelectStrategy implements SelectStrategy {
+        private final int iterations;
+
+        BusyPollSelectStrategy(int iterations) {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception {
+            if(hasTasks) return selectSupplier.get();
+            for(int i = 0; i < iterations; i++) {
+                int ready = selectSupplier.get();
+                if(ready > 0) return ready;
+            }
+            return SelectStrategy.SELECT;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+/**
+ * Handle of a block of code registered in the timer of an {@link IOService}
+ * by {@link IOService#timeout(Procedure, long)}. Cheaper than a
+ * {@link IOService#schedule(Procedure, long) scheduled task}, intended for
+ * timeouts that usually are cancelled before they expire.
+ */
+public interface Timeout {
+
+    /**
+     * Cancels the timeout, if it is not already expired. Can be called from any thread.
+     * @return true if the timeout was cancelled by this call
+     */
+    boolean cancel();
+
+    /**
+     * @return true if the timeout was cancelled
+     */
+    boolean isCancelled();
+
+    /**
+     * @return true if the block of code has been (or is being) executed
+     */
+    boolean isExpired();
+}
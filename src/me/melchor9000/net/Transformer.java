@@ -0,0 +1,34 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+/**
+ * Abstracts a piece of code that will receive an argument of
+ * type {@code From} and returns a value of type {@code To}.
+ */
+public interface Transformer<From, To> {
+
+    /**
+     * Executes the block of code with the argument {@code arg}.
+     * @param arg argument to pass
+     * @return the transformed value
+     * @throws Exception if the block of code fails
+     */
+    To call(From arg) throws Exception;
+}
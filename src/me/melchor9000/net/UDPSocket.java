@@ -26,7 +26,6 @@ import io.netty.channel.socket.DatagramPacket;
 import io.netty.channel.socket.nio.NioDatagramChannel;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Array;
 import java.net.InetSocketAddress;
 import java.net.ProtocolFamily;
 import java.net.SocketAddress;
@@ -65,12 +64,17 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  *     a {@link Packet} which stores information about the Datagram received. The
  *     buffer inside it is your buffer.
  * </p>
+ * <p>
+ *     The received datagrams can also be consumed as a stream of {@link Packet}{@code s}
+ *     using the {@link Publisher} returned by {@link #publisher()}.
+ * </p>
  */
 public class UDPSocket extends Socket {
     private DatagramChannel socket;
     private ConcurrentLinkedQueue<DatagramPacket> receivedPackets;
     private ConcurrentLinkedQueue<ReadOperation> readOperations;
     private ReadManager readManager;
+    private volatile ReadPublisher publisher;
     private volatile boolean canReadDirectly = false;
 
     /**
@@ -151,11 +155,13 @@ public class UDPSocket extends Socket {
 
     public Future<Void> sendAsyncTo(ByteBuf data, final int bytes, InetSocketAddress endpoint) {
         checkSocketCreated("sendAsyncTo");
+        final long startTime = System.nanoTime();
         final ByteBuf buff = channel.alloc().directBuffer(bytes).retain();
         buff.writeBytes(data, bytes);
         return createFuture(channel.writeAndFlush(new DatagramPacket(buff, endpoint)).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
+                if(future.isSuccess()) metrics.sent(bytes, startTime);
                 buff.release();
             }
         }));
@@ -194,22 +200,12 @@ public class UDPSocket extends Socket {
     @NotNull
     @Override
     public Future<Long> receiveAsync(ByteBuf data, int bytes) {
-        @SuppressWarnings("unchecked") final Future<Packet> leFuture[] = (FutureImpl<Packet>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Long> future = createFuture(new Procedure() {
-            @Override
-            public void call() {
-                leFuture[0].cancel(true);
-            }
-        });
-
-        leFuture[0] = receiveAsyncFrom(data, bytes).whenDone(new Callback<Future<Packet>>() {
+        return receiveAsyncFrom(data, bytes).map(new Transformer<Packet, Long>() {
             @Override
-            public void call(Future<Packet> arg) {
-                if(arg.isSuccessful()) future.postSuccess((long) arg.getValueNow().bytes);
-                else future.postError(arg.cause());
+            public Long call(Packet arg) {
+                return (long) arg.bytes;
             }
         });
-        return future;
     }
 
     public Future<Packet> receiveAsyncFrom(ByteBuf data, int bytes) {
@@ -264,66 +260,34 @@ public class UDPSocket extends Socket {
 
     public <Type extends Serializable> Future<Type> receiveAsync(final Type data) {
         final ByteBuf b = Unpooled.buffer(1500).retain();
-        @SuppressWarnings("unchecked") final Future<Long> leFuture[] = (FutureImpl<Long>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Type> future = createFuture(new Procedure() {
+        return receiveAsync(b).map(new Transformer<Long, Type>() {
             @Override
-            public void call() {
-                leFuture[0].cancel(true);
+            public Type call(Long arg) throws DataNotRepresentsObject {
+                data.fromByteBuf(b);
+                return data;
             }
-        });
-
-        leFuture[0] = receiveAsync(b).whenDone(new Callback<Future<Long>>() {
+        }).whenDone(new Callback<Future<Type>>() {
             @Override
-            public void call(Future<Long> arg) {
-                try {
-                    if(arg.isSuccessful()) {
-                        try {
-                            data.fromByteBuf(b);
-                        } catch(DataNotRepresentsObject e) {
-                            future.postError(e);
-                        }
-                        future.postSuccess(data);
-                    } else {
-                        future.postError(arg.cause());
-                    }
-                } finally {
-                    b.release();
-                }
+            public void call(Future<Type> arg) {
+                b.release();
             }
         });
-        return future;
     }
 
     public <Type extends Serializable> Future<Packet> receiveAsyncFrom(final Type data) {
         final ByteBuf b = Unpooled.buffer(1500).retain();
-        @SuppressWarnings("unchecked") final Future<Packet> leFuture[] = (FutureImpl<Packet>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Packet> future = createFuture(new Procedure() {
+        return receiveAsyncFrom(b).map(new Transformer<Packet, Packet>() {
             @Override
-            public void call() {
-                leFuture[0].cancel(true);
+            public Packet call(Packet arg) throws DataNotRepresentsObject {
+                data.fromByteBuf(b);
+                return arg;
             }
-        });
-
-        leFuture[0] = receiveAsyncFrom(b).whenDone(new Callback<Future<Packet>>() {
+        }).whenDone(new Callback<Future<Packet>>() {
             @Override
             public void call(Future<Packet> arg) {
-                try {
-                    if(arg.isSuccessful()) {
-                        try {
-                            data.fromByteBuf(b);
-                        } catch(DataNotRepresentsObject e) {
-                            future.postError(e);
-                        }
-                        future.postSuccess(arg.getValueNow());
-                    } else {
-                        future.postError(arg.cause());
-                    }
-                } finally {
-                    b.release();
-                }
+                b.release();
             }
         });
-        return future;
     }
 
     public void receive(Serializable data) throws Throwable {
@@ -339,11 +303,39 @@ public class UDPSocket extends Socket {
         return p;
     }
 
+    @Override
+    int pendingReceives() {
+        return readOperations.size();
+    }
+
+    /**
+     * <p>Returns a {@link Publisher} that emits every received datagram as a
+     * {@link Packet}, without any copy nor {@link Future}. The {@link Packet#data}
+     * is the buffer that netty has read, the subscriber owns it and must
+     * {@link ByteBuf#release() release} it when done with it.</p>
+     * <p>When the subscriber has no demand, the socket stops reading from the network
+     * until more items are requested. Datagrams received before subscribing are
+     * the first items received. While there's a subscriber, {@code receive} operations
+     * won't get any datagram.</p>
+     * @return the publisher of received datagrams for this socket
+     */
+    public @NotNull Publisher<Packet> publisher() {
+        checkSocketCreated("publisher");
+        if(publisher == null) publisher = new ReadPublisher();
+        return publisher;
+    }
+
     private class ReadManager extends ChannelInboundHandlerAdapter {
         @Override
         public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
             DatagramPacket message = (DatagramPacket) msg;
-            bytesRead += message.content().readableBytes();
+            metrics.received(message.content().readableBytes());
+            if(publisher != null && publisher.hasSubscriber()) {
+                publisher.offer(new Packet(message.content(), message.sender(), message.content().readableBytes()));
+                fireReceivedData();
+                return;
+            }
+
             receivedPackets.add(message);
             try {
                 checkAndSendData();
@@ -352,9 +344,15 @@ public class UDPSocket extends Socket {
             }
         }
 
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if(publisher != null) publisher.complete();
+            super.channelInactive(ctx);
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-            cause.printStackTrace();
+            if(publisher == null || !publisher.error(cause)) cause.printStackTrace();
         }
 
         private void checkAndSendData() throws Exception {
@@ -365,6 +363,7 @@ public class UDPSocket extends Socket {
                     try {
                         int bytes = packet.content().readableBytes();
                         packet.content().readBytes(op.buffer, bytes);
+                        metrics.receiveDone(op.startTime);
                         op.cbk.postSuccess(new Packet(op.buffer, packet.sender(), bytes));
                     } finally {
                         packet.release();
@@ -373,7 +372,11 @@ public class UDPSocket extends Socket {
                     canReadDirectly = true;
                     op.cbk.postError(new NotEnoughSpaceForPacketException("Cannot write message into your buffer",
                             receivedPackets.peek().content().readableBytes(), receivedPackets.peek().sender()));
-                    if(canReadDirectly) receivedPackets.poll().release();
+                    if(canReadDirectly) {
+                        DatagramPacket packet = receivedPackets.poll();
+                        metrics.discarded(packet.content().readableBytes());
+                        packet.release();
+                    }
                     canReadDirectly = false;
                 }
             }
@@ -384,10 +387,30 @@ public class UDPSocket extends Socket {
         }
     }
 
+    private class ReadPublisher extends ChannelPublisher<Packet> {
+        private ReadPublisher() {
+            super(channel);
+        }
+
+        @Override
+        protected void subscribed() {
+            while(!receivedPackets.isEmpty() && hasSubscriber()) {
+                DatagramPacket packet = receivedPackets.poll();
+                offer(new Packet(packet.content(), packet.sender(), packet.content().readableBytes()));
+            }
+        }
+
+        @Override
+        protected void release(@NotNull Packet item) {
+            item.data.release();
+        }
+    }
+
     private class ReadOperation {
         private FutureImpl<Packet> cbk;
         private int bytesToRead;
         private ByteBuf buffer;
+        private final long startTime = System.nanoTime();
 
         private ReadOperation(FutureImpl<Packet> cbk, int bytesToRead, ByteBuf buffer) {
             this.cbk = cbk;
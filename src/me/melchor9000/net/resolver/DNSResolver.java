@@ -22,7 +22,6 @@ import me.melchor9000.net.*;
 import me.melchor9000.net.resolver.serverLookup.DNSServerProvider;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Array;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -77,18 +76,11 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
      * @return a {@link Future} representing the task
      */
     public @NotNull Future<Iterable<InetAddress>> resolveAsyncV4(@NotNull final String name) {
-        @SuppressWarnings("unchecked")
-        final FutureImpl<Iterable<InetAddress>> f[] = (FutureImpl<Iterable<InetAddress>>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Iterable<InetAddress>> future = f[0] = new FutureImpl<>(service, new Procedure() {
-            @Override
-            public void call() {
-                requests.remove(requestByFuture(f[0]));
-            }
-        });
-
         Iterable<InetAddress> resolved = DNSResolverCache.getAddressesIPv4(name);
         if(resolved != null) {
+            FutureImpl<Iterable<InetAddress>> future = new FutureImpl<>(service, null);
             future.postSuccess(resolved);
+            return future;
         } else {
             final DNSMessage message = new DNSMessage();
             DNSQuery queryIPv4 = new DNSQuery();
@@ -99,9 +91,8 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
             queryIPv4.setClass(DNSUtils.classToInt("IN"));
             message.addQuery(queryIPv4);
 
-            doRequest(future, message, 4);
+            return doRequest(message, 4);
         }
-        return future;
     }
 
     /**
@@ -111,18 +102,11 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
      * @return a {@link Future} representing the task
      */
     public @NotNull Future<Iterable<InetAddress>> resolveAsyncV6(@NotNull final String name) {
-        @SuppressWarnings("unchecked")
-        final FutureImpl<Iterable<InetAddress>> f[] = (FutureImpl<Iterable<InetAddress>>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Iterable<InetAddress>> future = f[0] = new FutureImpl<>(service, new Procedure() {
-            @Override
-            public void call() {
-                requests.remove(requestByFuture(f[0]));
-            }
-        });
-
         Iterable<InetAddress> resolved = DNSResolverCache.getAddressesIPv6(name);
         if(resolved != null) {
+            FutureImpl<Iterable<InetAddress>> future = new FutureImpl<>(service, null);
             future.postSuccess(resolved);
+            return future;
         } else {
             final DNSMessage message = new DNSMessage();
             DNSQuery queryIPv6 = new DNSQuery();
@@ -133,9 +117,8 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
             queryIPv6.setClass(DNSUtils.classToInt("IN"));
             message.addQuery(queryIPv6);
 
-            doRequest(future, message, 6);
+            return doRequest(message, 6);
         }
-        return future;
     }
 
     /**
@@ -145,54 +128,21 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
      * @return a {@link Future} representing the task
      */
     public @NotNull Future<Iterable<InetAddress>> resolveAsync(@NotNull final String name) {
-        @SuppressWarnings("unchecked")
-        final FutureImpl<Iterable<InetAddress>> f[] = (FutureImpl<Iterable<InetAddress>>[]) Array.newInstance(FutureImpl.class, 1);
-        final FutureImpl<Iterable<InetAddress>> future = f[0] = new FutureImpl<>(service, new Procedure() {
-            @Override
-            public void call() {
-                requests.remove(requestByFuture(f[0]));
-            }
-        });
-
         if(DNSResolverCache.hasIPv4(name) && DNSResolverCache.hasIPv6(name)) {
+            FutureImpl<Iterable<InetAddress>> future = new FutureImpl<>(service, null);
             future.postSuccess(DNSResolverCache.getAddresses(name));
-        } else if(!DNSResolverCache.hasIPv4(name) && DNSResolverCache.hasIPv6(name)) {
-            resolveAsyncV4(name).whenDone(new Callback<Future<Iterable<InetAddress>>>() {
-                @Override
-                public void call(Future<Iterable<InetAddress>> arg) {
-                    if(arg.isSuccessful()) future.postSuccess(DNSResolverCache.getAddresses(name));
-                    else future.postError(arg.cause());
-                }
-            });
-        } else if(!DNSResolverCache.hasIPv6(name) && DNSResolverCache.hasIPv4(name)) {
-            resolveAsyncV6(name).whenDone(new Callback<Future<Iterable<InetAddress>>>() {
-                @Override
-                public void call(Future<Iterable<InetAddress>> arg) {
-                    if(arg.isSuccessful()) future.postSuccess(DNSResolverCache.getAddresses(name));
-                    else future.postError(arg.cause());
-                }
-            });
-        } else {
-            final boolean hasFinished[] = new boolean[] { false, false };
-            resolveAsyncV4(name).whenDone(new Callback<Future<Iterable<InetAddress>>>() {
-                @Override
-                public void call(Future<Iterable<InetAddress>> arg) {
-                    hasFinished[0] = true;
-                    if(arg.isSuccessful() && hasFinished[1]) if(!future.isDone()) future.postSuccess(DNSResolverCache.getAddresses(name));
-                    else future.postError(arg.cause());
-                }
-            });
-            resolveAsyncV6(name).whenDone(new Callback<Future<Iterable<InetAddress>>>() {
-                @Override
-                public void call(Future<Iterable<InetAddress>> arg) {
-                    hasFinished[1] = true;
-                    if(arg.isSuccessful() && hasFinished[0]) if(!future.isDone()) future.postSuccess(DNSResolverCache.getAddresses(name));
-                    else future.postError(arg.cause());
-                }
-            });
+            return future;
         }
 
-        return future;
+        List<Future<Iterable<InetAddress>>> queries = new ArrayList<>(2);
+        if(!DNSResolverCache.hasIPv4(name)) queries.add(resolveAsyncV4(name));
+        if(!DNSResolverCache.hasIPv6(name)) queries.add(resolveAsyncV6(name));
+        return Futures.allOf(service, queries).map(new Transformer<List<Iterable<InetAddress>>, Iterable<InetAddress>>() {
+            @Override
+            public Iterable<InetAddress> call(List<Iterable<InetAddress>> arg) {
+                return DNSResolverCache.getAddresses(name);
+            }
+        });
     }
 
     /**
@@ -247,22 +197,15 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
         return null;
     }
 
-    private Request requestByFuture(Future<Iterable<InetAddress>> id) {
-        for(Request r : requests) {
-            if(r.future == id) {
-                return r;
-            }
-        }
-        return null;
-    }
-
-    private void doRequest(final FutureImpl<Iterable<InetAddress>> future, final DNSMessage sentMessage, int type) {
-        final Request r = new Request(future, sentMessage, lookupList.get().iterator(), type);
+    private Future<Iterable<InetAddress>> doRequest(final DNSMessage sentMessage, int type) {
+        final Request r = new Request(sentMessage, lookupList.get().iterator(), type);
+        final FutureImpl<Iterable<InetAddress>> future = r.future;
         requests.add(r);
         future.whenDone(new Callback<Future<Iterable<InetAddress>>>() {
             @Override
             public void call(Future<Iterable<InetAddress>> arg) {
                 requests.remove(r);
+                if(r.timeout != null) r.timeout.cancel();
             }
         });
 
@@ -282,11 +225,11 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
                 if(!future.isDone()) {
                     if(r.tries > 0) {
                         socket.sendAsyncTo(sentMessage, r.currentServer).whenDone(sendCbk);
-                        r.timeoutFuture = service.schedule(this, 1000);
+                        r.timeout = service.timeout(this, 1000);
                     } else {
                         if(r.it.hasNext()) {
                             socket.sendAsyncTo(sentMessage, r.currentServer = r.it.next()).whenDone(sendCbk);
-                            r.timeoutFuture = service.schedule(this, 1000);
+                            r.timeout = service.timeout(this, 1000);
                         } else {
                             future.postError(new TimeoutException());
                         }
@@ -297,7 +240,8 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
 
         if(!socket.isOpen()) socket.bind();
         socket.sendAsyncTo(sentMessage, r.currentServer).whenDone(sendCbk);
-        r.timeoutFuture = service.schedule(timeoutProc, 1000);
+        r.timeout = service.timeout(timeoutProc, 1000);
+        return future;
     }
 
     private void addAllRecords(String name, Iterable<DNSResourceRecord> a) {
@@ -324,7 +268,7 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
         Request r = requestById(message.getId());
         if(r != null) {
             String name = r.sentMessage.getQueries().iterator().next().getName();
-            if(r.timeoutFuture != null) r.timeoutFuture.cancel(true);
+            if(r.timeout != null) r.timeout.cancel();
             if(message.getResponseCode() != 0) {
                 if(message.getResponseCode() == 3) {
                     r.future.postError(new UnknownHostException(name));
@@ -346,21 +290,26 @@ public class DNSResolver implements AutoCloseable, Callback<Socket> {
         }
     }
 
-    private class Request {
-        private FutureImpl<Iterable<InetAddress>> future;
-        private Future<?> timeoutFuture;
+    private class Request implements Procedure {
+        private final FutureImpl<Iterable<InetAddress>> future;
+        private Timeout timeout;
         private DNSMessage sentMessage;
         private Iterator<InetSocketAddress> it;
         private InetSocketAddress currentServer;
         private int tries = DNSResolver.this.tries;
         private int type;
 
-        private Request(FutureImpl<Iterable<InetAddress>> future, DNSMessage sentMessage, Iterator<InetSocketAddress> it, int type) {
-            this.future = future;
+        private Request(DNSMessage sentMessage, Iterator<InetSocketAddress> it, int type) {
+            this.future = new FutureImpl<>(service, this);
             this.sentMessage = sentMessage;
             this.it = it;
             this.type = type;
             currentServer = it.next();
         }
+
+        @Override
+        public void call() {
+            requests.remove(this);
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.BlockingOperationException;
+import io.netty.util.concurrent.Promise;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Blocking}
+ */
+public class BlockingTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        service.cancel();
+    }
+
+    @Test
+    public void waitingForAPromiseInItsEventLoopFails() throws Exception {
+        final EventLoop loop = service.group.next();
+        Throwable cause = loop.submit(new Callable<Throwable>() {
+            @Override
+            public Throwable call() {
+                try {
+                    Blocking.sync(loop.<Void>newPromise());
+                    return null;
+                } catch(Throwable e) {
+                    return e;
+                }
+            }
+        }).get(5, TimeUnit.SECONDS);
+        assertTrue("Must fail with a BlockingOperationException, got " + cause, cause instanceof BlockingOperationException);
+    }
+
+    @Test
+    public void getWithAHugeTimeoutWaits() throws Exception {
+        final Promise<String> promise = service.group.next().newPromise();
+        service.group.schedule(new Runnable() {
+            @Override
+            public void run() {
+                promise.setSuccess("done");
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertEquals("done", Blocking.get(promise, Long.MAX_VALUE / 1000));
+    }
+}
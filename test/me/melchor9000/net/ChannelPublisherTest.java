@@ -0,0 +1,159 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link Publisher} of a {@link TCPSocket}
+ */
+public class ChannelPublisherTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static IOService service;
+    private TCPAcceptor acceptor;
+    private java.net.Socket client;
+    private TCPSocket socket;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        socket = acceptor.accept();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        acceptor.close();
+    }
+
+    @Test
+    public void itemsAreReceivedOnDemand() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        socket.publisher().subscribe(subscriber);
+        Subscription subscription = subscriber.subscription();
+
+        send("hello");
+        assertNull("Nothing must be received without demand", subscriber.events.poll(200, TimeUnit.MILLISECONDS));
+        subscription.request(1);
+        assertEquals("hello", subscriber.next());
+
+        subscription.request(1);
+        client.close();
+        assertEquals("complete", subscriber.next());
+    }
+
+    @Test
+    public void previousSubscriptionDoesNotAffectTheNextSubscriber() throws Exception {
+        RecordingSubscriber first = new RecordingSubscriber();
+        socket.publisher().subscribe(first);
+        Subscription firstSubscription = first.subscription();
+        firstSubscription.cancel();
+
+        RecordingSubscriber second = new RecordingSubscriber();
+        socket.publisher().subscribe(second);
+        Subscription secondSubscription = second.subscription();
+
+        firstSubscription.request(5);
+        firstSubscription.cancel();
+        send("data");
+        assertNull("The old subscription must not add demand", second.events.poll(200, TimeUnit.MILLISECONDS));
+
+        secondSubscription.request(1);
+        assertEquals("The old subscription must not cancel the new one", "data", second.next());
+    }
+
+    @Test
+    public void readingIsRestoredAfterAnError() throws Throwable {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        socket.publisher().subscribe(subscriber);
+        subscriber.subscription().request(0);
+        assertTrue("Must fail with a non positive request", subscriber.next().startsWith("error"));
+
+        send("after");
+        ByteBuf data = Unpooled.buffer(5);
+        Future<Long> receive = socket.receiveAsync(data, 5);
+        receive.getValue(5000);
+        assertEquals("after", data.toString(UTF8));
+    }
+
+    private void send(String data) throws Exception {
+        client.getOutputStream().write(data.getBytes(UTF8));
+        client.getOutputStream().flush();
+    }
+
+    private static class RecordingSubscriber implements Subscriber<ByteBuf> {
+        private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            events.add(subscription);
+        }
+
+        @Override
+        public void onNext(ByteBuf item) {
+            events.add(item.toString(UTF8));
+            item.release();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.add("error " + throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("complete");
+        }
+
+        private Subscription subscription() throws InterruptedException {
+            return (Subscription) events.poll(5, TimeUnit.SECONDS);
+        }
+
+        private String next() throws InterruptedException {
+            return (String) events.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CompletionStages}
+ */
+public class CompletionStagesTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Test
+    public void stageCompletesWithTheValueOnTheEventLoop() throws Exception {
+        FutureImpl<String> future = new FutureImpl<>(service, null);
+        CompletableFuture<String> stage = CompletionStages.toCompletionStage(service, future);
+        CompletableFuture<Boolean> onLoop = onEventLoop(stage);
+        future.postSuccess("value");
+        //Waiting for the stage first would let this thread run its dependents
+        assertTrue("The stage must be completed on the event loop", onLoop.get(5, TimeUnit.SECONDS));
+        assertEquals("value", stage.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void stageCompletesWithTheErrorOnTheEventLoop() throws Exception {
+        FutureImpl<String> future = new FutureImpl<>(service, null);
+        CompletableFuture<String> stage = CompletionStages.toCompletionStage(service, future);
+        CompletableFuture<Boolean> onLoop = onEventLoop(stage);
+        IOException error = new IOException("error");
+        future.postError(error);
+        assertTrue("The stage must be completed on the event loop", onLoop.get(5, TimeUnit.SECONDS));
+        try {
+            stage.get(5, TimeUnit.SECONDS);
+            fail("The stage must fail");
+        } catch(ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void stageCompletesWhenTheServiceIsStopped() throws Exception {
+        IOService stopped = new IOService();
+        FutureImpl<String> future = new FutureImpl<>(stopped, null);
+        CompletableFuture<String> stage = CompletionStages.toCompletionStage(stopped, future);
+        stopped.cancel();
+        future.postSuccess("value");
+        assertEquals("value", stage.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void futureCompletesWithTheValueOnTheEventLoop() throws Exception {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        Future<String> future = CompletionStages.fromCompletionStage(service, stage);
+        final CompletableFuture<Boolean> onLoop = new CompletableFuture<>();
+        future.whenDone(new Callback<Future<String>>() {
+            @Override
+            public void call(Future<String> arg) {
+                onLoop.complete(service.currentEventLoop() != null);
+            }
+        });
+        stage.complete("value");
+        assertEquals("value", future.getValue(5000));
+        assertTrue("The task must be completed on the event loop", onLoop.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void futureCompletesWithTheError() throws Exception {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        Future<String> future = CompletionStages.fromCompletionStage(service, stage);
+        IOException error = new IOException("error");
+        stage.completeExceptionally(error);
+        try {
+            future.getValue(5000);
+            fail("The task must fail");
+        } catch(ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void cancellingTheFutureCancelsTheStage() throws Exception {
+        CompletableFuture<String> stage = new CompletableFuture<>();
+        Future<String> future = CompletionStages.fromCompletionStage(service, stage);
+        future.cancel(true);
+        assertTrue("The stage must be cancelled", stage.isCancelled());
+        assertTrue("The task must be cancelled", future.isCancelled());
+    }
+
+    private static <T> CompletableFuture<Boolean> onEventLoop(CompletableFuture<T> stage) {
+        final CompletableFuture<Boolean> onLoop = new CompletableFuture<>();
+        stage.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable throwable) {
+                onLoop.complete(service.currentEventLoop() != null);
+            }
+        });
+        return onLoop;
+    }
+}
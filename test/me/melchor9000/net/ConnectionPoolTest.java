@@ -0,0 +1,184 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link ConnectionPool}, against a local {@link TCPAcceptor}
+ */
+public class ConnectionPoolTest {
+    private static IOService service;
+    private TCPAcceptor acceptor;
+    private BlockingQueue<TCPSocket> accepted;
+    private ConnectionPool.Key key;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        accepted = new LinkedBlockingQueue<>();
+        acceptor = new TCPAcceptor(service);
+        acceptor.setOnConnectionListener(new Callback<TCPSocket>() {
+            @Override
+            public void call(TCPSocket socket) {
+                accepted.add(socket);
+            }
+        });
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        key = ConnectionPool.Key.tcp(acceptor.channel.localAddress());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        acceptor.close();
+        for(TCPSocket socket : accepted) socket.close();
+    }
+
+    @Test
+    public void releasedConnectionsAreReused() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 2, 10000);
+        TCPSocket first = pool.acquire(key).getValue(5000);
+        assertTrue("The connection must be open", first.isOpen());
+        assertEquals(1, pool.openConnections(key));
+        assertEquals(0, pool.idleConnections(key));
+
+        pool.release(first);
+        assertEquals(1, pool.idleConnections(key));
+        assertSame("The idle connection must be reused", first, pool.acquire(key).getValue(5000));
+        assertEquals(1, pool.openConnections(key));
+        assertEquals(0, pool.idleConnections(key));
+        pool.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void releasingAnUnknownConnectionFails() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 2, 10000);
+        TCPSocket socket = pool.acquire(key).getValue(5000);
+        pool.release(socket);
+        pool.release(socket);
+    }
+
+    @Test
+    public void acquiresWaitWhenTheLimitIsReached() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 2, 10000);
+        TCPSocket first = pool.acquire(key).getValue(5000);
+        TCPSocket second = pool.acquire(key).getValue(5000);
+        assertNotSame(first, second);
+
+        Future<TCPSocket> third = pool.acquire(key);
+        assertFalse("Must wait for a connection", third.isDone());
+        assertEquals(2, pool.openConnections(key));
+        assertEquals(1, pool.waitingAcquires(key));
+
+        pool.release(second);
+        assertSame("The released connection must be given to the waiter", second, third.getValue(5000));
+        assertEquals(0, pool.waitingAcquires(key));
+        assertEquals(0, pool.idleConnections(key));
+        pool.close();
+    }
+
+    @Test
+    public void cancelledAcquiresLeaveTheQueue() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 1, 10000);
+        TCPSocket first = pool.acquire(key).getValue(5000);
+        Future<TCPSocket> waiter = pool.acquire(key);
+        assertEquals(1, pool.waitingAcquires(key));
+
+        waiter.cancel(true);
+        assertEquals(0, pool.waitingAcquires(key));
+        pool.release(first);
+        assertEquals("The connection must be idle, not given to the cancelled waiter", 1, pool.idleConnections(key));
+        pool.close();
+    }
+
+    @Test
+    public void discardedConnectionsFreeTheirSlot() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 1, 10000);
+        TCPSocket first = pool.acquire(key).getValue(5000);
+        Future<TCPSocket> waiter = pool.acquire(key);
+
+        pool.discard(first);
+        TCPSocket second = waiter.getValue(5000);
+        assertNotSame("A new connection must be created", first, second);
+        assertEquals(1, pool.openConnections(key));
+        pool.close();
+    }
+
+    @Test
+    public void closedIdleConnectionsAreNotGiven() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 2, 10000);
+        TCPSocket first = pool.acquire(key).getValue(5000);
+        pool.release(first);
+        accepted.poll(5, TimeUnit.SECONDS).close();
+        first.onClose().getValue(5000);
+
+        TCPSocket second = pool.acquire(key).getValue(5000);
+        assertNotSame("The closed connection must not be reused", first, second);
+        assertTrue(second.isOpen());
+        assertEquals(1, pool.openConnections(key));
+        pool.close();
+    }
+
+    @Test
+    public void idleConnectionsAreClosedAfterTheTimeout() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 2, 100);
+        TCPSocket socket = pool.acquire(key).getValue(5000);
+        pool.release(socket);
+        socket.onClose().getValue(5000);
+        assertEquals(0, pool.idleConnections(key));
+        assertEquals(0, pool.openConnections(key));
+        pool.close();
+    }
+
+    @Test
+    public void closeFailsTheWaiters() throws Exception {
+        ConnectionPool pool = new ConnectionPool(service, 1, 10000);
+        pool.acquire(key).getValue(5000);
+        Future<TCPSocket> waiter = pool.acquire(key);
+        pool.close();
+        try {
+            waiter.getValue(5000);
+            fail("The waiter must fail");
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertTrue("Acquiring from a closed pool must fail", pool.acquire(key).cause() instanceof IllegalStateException);
+    }
+}
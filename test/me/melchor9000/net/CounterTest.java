@@ -0,0 +1,63 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Counter}
+ */
+public class CounterTest {
+    @Test
+    public void countsFromOneThread() {
+        Counter counter = new Counter();
+        assertEquals(0, counter.get());
+        counter.increment();
+        counter.add(41);
+        assertEquals(42, counter.get());
+        assertEquals("42", counter.toString());
+    }
+
+    @Test
+    public void countsFromManyThreads() throws Exception {
+        final Counter counter = new Counter();
+        final int threads = 8, increments = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch(InterruptedException ignore) {}
+                    for(int j = 0; j < increments; j++) counter.add(2);
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for(Thread worker : workers) worker.join();
+        assertEquals("No increment must be lost", 2L * threads * increments, counter.get());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.channel.EventLoop;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the {@link EventLoopChooser} policies
+ */
+public class EventLoopChooserTest {
+    private IOService server;
+    private IOService workers;
+    private TCPAcceptor acceptor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new IOService();
+        workers = new IOService(2);
+        acceptor = new TCPAcceptor(server, workers);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        acceptor.close();
+        workers.cancel();
+        server.cancel();
+    }
+
+    @Test
+    public void blockedLoopDoesNotStopTheAccepts() throws Exception {
+        acceptor.setChildEventLoopChooser(EventLoopChooser.LEAST_PENDING_TASKS);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        final AtomicReference<EventLoop> blocked = new AtomicReference<>();
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        workers.post(new Procedure() {
+            @Override
+            public void call() {
+                blocked.set(workers.currentEventLoop());
+                running.countDown();
+                try {
+                    release.await();
+                } catch(InterruptedException ignore) {}
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        try {
+            for(int i = 0; i < 3; i++) {
+                java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+                try {
+                    TCPSocket socket = acceptor.acceptAsync().getValue(5000);
+                    assertNotSame("Must not choose the blocked loop", blocked.get(), socket.channel.eventLoop());
+                    socket.close();
+                } finally {
+                    client.close();
+                }
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void leastConnectionsSpreadsTheConnections() throws Exception {
+        acceptor.setChildEventLoopChooser(EventLoopChooser.LEAST_CONNECTIONS);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket[] clients = new java.net.Socket[4];
+        for(int i = 0; i < clients.length; i++) {
+            clients[i] = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+            acceptor.acceptAsync().getValue(5000);
+        }
+        for(EventLoopMetrics loop : workers.metrics().eventLoops()) {
+            assertEquals("Every loop must have the same connections", 2, loop.connections());
+        }
+        for(java.net.Socket client : clients) client.close();
+    }
+}
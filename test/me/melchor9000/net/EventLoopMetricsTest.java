@@ -0,0 +1,103 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link EventLoopMetrics}
+ */
+public class EventLoopMetricsTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        service.cancel();
+    }
+
+    @Test
+    public void pendingTasksDoesNotWaitForABlockedLoop() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        EventLoopMetrics loop = service.metrics().eventLoops().get(0);
+        service.post(new Procedure() {
+            @Override
+            public void call() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch(InterruptedException ignore) {}
+                done.countDown();
+            }
+        });
+        service.post(new Procedure() {
+            @Override
+            public void call() {
+                done.countDown();
+            }
+        });
+        try {
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            assertEquals("The running and the queued tasks are pending", 2, loop.pendingTasks());
+            assertTrue(loop.toString().contains("pendingTasks=2"));
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + elapsed + "ms for the blocked loop", elapsed < 100);
+        } finally {
+            release.countDown();
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        long start = System.currentTimeMillis();
+        while(loop.pendingTasks() != 0 && System.currentTimeMillis() - start < 5000) Thread.sleep(10);
+        assertEquals(0, loop.pendingTasks());
+    }
+
+    @Test
+    public void taskTimeRatioMeasuresTheTasks() throws Exception {
+        EventLoopMetrics loop = service.metrics().eventLoops().get(0);
+        double before = loop.taskTimeRatio();
+        final CountDownLatch done = new CountDownLatch(1);
+        service.post(new Procedure() {
+            @Override
+            public void call() {
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+                while(System.nanoTime() < end);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        double after = loop.taskTimeRatio();
+        assertTrue("The ratio must grow after a busy task: " + before + " -> " + after, after > before);
+        assertTrue("The ratio is a percentage: " + after, after > 0 && after <= 100);
+    }
+}
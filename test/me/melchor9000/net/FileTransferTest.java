@@ -0,0 +1,231 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLContext;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the file operations of {@link TCPSocket} and {@link SSLSocket}
+ */
+public class FileTransferTest {
+    private static IOService service;
+    private static byte[] data;
+    private File file;
+    private FileChannel channel;
+    private TCPAcceptor acceptor;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+        data = new byte[300 * 1024 + 17];
+        new Random(42).nextBytes(data);
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("async-net", ".bin");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.write(data);
+        channel = raf.getChannel();
+        channel.position(123);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel.close();
+        if(acceptor != null) acceptor.close();
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void sendFileInPlainSocket() throws Throwable {
+        acceptor = new TCPAcceptor(service);
+        sendFileRange(SocketFactory.getDefault());
+    }
+
+    @Test
+    public void sendFileInSSLSocket() throws Throwable {
+        acceptor = TestCertificate.acceptor(service);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        sendFileRange(context.getSocketFactory());
+    }
+
+    private void sendFileRange(SocketFactory clientFactory) throws Throwable {
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = clientFactory.createSocket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(10000);
+        TCPSocket server = acceptor.accept();
+
+        int offset = 1000, length = data.length - 2000;
+        Future<Long> range = server.sendFileAsync(channel, offset, length);
+        Future<Long> whole = server.sendFileAsync(file);
+        byte[] received = new byte[length + data.length];
+        new DataInputStream(client.getInputStream()).readFully(received);
+
+        assertEquals(length, (long) range.getValue(10000));
+        assertEquals(data.length, (long) whole.getValue(10000));
+        assertArrayEquals("The range of the file doesn't match", Arrays.copyOfRange(data, offset, offset + length), Arrays.copyOfRange(received, 0, length));
+        assertArrayEquals("The whole file doesn't match", data, Arrays.copyOfRange(received, length, received.length));
+        assertTrue("The channel must be open", channel.isOpen());
+        assertEquals("The position of the channel must not change", 123, channel.position());
+        assertEquals(received.length, server.metrics().bytesSent().get());
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void sendRangePastTheEndFailsInPlainSocket() throws Throwable {
+        acceptor = new TCPAcceptor(service);
+        sendRangePastTheEnd(SocketFactory.getDefault());
+    }
+
+    @Test
+    public void sendRangePastTheEndFailsInSSLSocket() throws Throwable {
+        acceptor = TestCertificate.acceptor(service);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        sendRangePastTheEnd(context.getSocketFactory());
+    }
+
+    private void sendRangePastTheEnd(SocketFactory clientFactory) throws Throwable {
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = clientFactory.createSocket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(10000);
+        TCPSocket server = acceptor.accept();
+
+        Future<Long> channelRange = server.sendFileAsync(channel, data.length - 10, 11);
+        Future<Long> fileRange = server.sendFileAsync(file, 10, data.length);
+        for(Future<Long> range : Arrays.asList(channelRange, fileRange)) {
+            try {
+                range.getValue(10000);
+                fail("A range past the end of the file must fail");
+            } catch(ExecutionException e) {
+                assertTrue("Must fail with an EOFException", e.getCause() instanceof EOFException);
+            }
+        }
+        try {
+            server.sendFile(channel, 0, data.length + 1);
+            fail("A range past the end of the file must fail");
+        } catch(EOFException ignore) {}
+
+        //Nothing was sent, and the socket still works
+        server.sendAsync(Unpooled.wrappedBuffer(new byte[] { 42 }));
+        assertEquals("Nothing of the failed ranges must be sent", 42, client.getInputStream().read());
+        assertTrue("The channel must be open", channel.isOpen());
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void receiveFileInPlainSocket() throws Throwable {
+        acceptor = new TCPAcceptor(service);
+        receiveFileRange(SocketFactory.getDefault());
+    }
+
+    @Test
+    public void receiveFileInSSLSocket() throws Throwable {
+        acceptor = TestCertificate.acceptor(service);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, InsecureTrustManagerFactory.INSTANCE.getTrustManagers(), null);
+        receiveFileRange(context.getSocketFactory());
+    }
+
+    @Test
+    public void receiveFileFailsWhenTheConnectionIsClosed() throws Throwable {
+        acceptor = new TCPAcceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = SocketFactory.getDefault().createSocket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        TCPSocket server = acceptor.accept();
+
+        Future<Long> receive = server.receiveToFileAsync(channel, 0, 100);
+        client.getOutputStream().write(new byte[10]);
+        client.close();
+        try {
+            receive.getValue(10000);
+            fail("The receive must fail");
+        } catch(ExecutionException e) {
+            assertTrue("Must fail with an IOException", e.getCause() instanceof IOException);
+        }
+        server.close();
+    }
+
+    private void receiveFileRange(SocketFactory clientFactory) throws Throwable {
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = clientFactory.createSocket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        TCPSocket server = acceptor.accept();
+        byte[] sent = new byte[data.length];
+        new Random(7).nextBytes(sent);
+
+        //The first bytes are received before the call
+        OutputStream out = client.getOutputStream();
+        out.write(sent, 0, 1000);
+        out.flush();
+        long start = System.currentTimeMillis();
+        while(server.readableBytes() < 1000 && System.currentTimeMillis() - start < 10000) Thread.sleep(10);
+
+        int offset = 50;
+        Future<Long> receive = server.receiveToFileAsync(channel, offset, sent.length);
+        out.write(sent, 1000, sent.length - 1000);
+        out.flush();
+        assertEquals(sent.length, (long) receive.getValue(10000));
+
+        assertArrayEquals("The data written to the file doesn't match", sent, readFile(offset, sent.length));
+        assertArrayEquals("The data before the position must not change", Arrays.copyOfRange(data, 0, offset), readFile(0, offset));
+        assertTrue("The channel must be open", channel.isOpen());
+        assertEquals("The position of the channel must not change", 123, channel.position());
+        client.close();
+        server.close();
+    }
+
+    private byte[] readFile(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0);
+        return buffer.array();
+    }
+}
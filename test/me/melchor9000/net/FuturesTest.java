@@ -0,0 +1,240 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Futures} and the combinators of {@link Future}
+ */
+public class FuturesTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        service = new IOService();
+    }
+
+    @Test
+    public void mapTransformsTheValue() {
+        FutureImpl<Integer> future = createFuture();
+        Future<String> mapped = future.map(new Transformer<Integer, String>() {
+            @Override
+            public String call(Integer arg) {
+                return "n" + arg;
+            }
+        });
+
+        assertTrue("Mapped task must not be done", !mapped.isDone());
+        future.postSuccess(3);
+        assertTrue("Mapped task must be successful", mapped.isSuccessful());
+        assertEquals("The value doesn't match", "n3", mapped.getValueNow());
+    }
+
+    @Test
+    public void mapPropagatesFailure() {
+        FutureImpl<Integer> future = createFuture();
+        Future<Integer> mapped = future.map(new Transformer<Integer, Integer>() {
+            @Override
+            public Integer call(Integer arg) {
+                fail("Transformer must not be called");
+                return null;
+            }
+        });
+
+        RuntimeException cause = new RuntimeException();
+        future.postError(cause);
+        assertTrue("Mapped task must be done", mapped.isDone());
+        assertTrue("Mapped task must not be successful", !mapped.isSuccessful());
+        assertSame("Cause must be the same", cause, mapped.cause());
+    }
+
+    @Test
+    public void mapFailsWhenTransformerThrows() {
+        FutureImpl<Integer> future = createFuture();
+        Future<Integer> mapped = future.map(new Transformer<Integer, Integer>() {
+            @Override
+            public Integer call(Integer arg) throws Exception {
+                throw new DataNotRepresentsObject("nope", null);
+            }
+        });
+
+        future.postSuccess(1);
+        assertTrue("Mapped task must not be successful", !mapped.isSuccessful());
+        assertTrue("Cause must be the thrown exception", mapped.cause() instanceof DataNotRepresentsObject);
+    }
+
+    @Test
+    public void cancelMappedCancelsSource() {
+        FutureImpl<Integer> future = createFuture(new Procedure() { @Override public void call() { } });
+        Future<Integer> mapped = future.map(new Transformer<Integer, Integer>() {
+            @Override
+            public Integer call(Integer arg) {
+                return arg;
+            }
+        });
+
+        mapped.cancel(true);
+        assertTrue("Mapped task must be cancelled", mapped.isCancelled());
+        assertTrue("Source task must be cancelled", future.isCancelled());
+    }
+
+    @Test
+    public void thenComposeFollowsTheNextTask() {
+        FutureImpl<Integer> future = createFuture();
+        final FutureImpl<String> next = createFuture();
+        Future<String> composed = future.thenCompose(new Transformer<Integer, Future<String>>() {
+            @Override
+            public Future<String> call(Integer arg) {
+                return next;
+            }
+        });
+
+        future.postSuccess(1);
+        assertTrue("Composed task must not be done", !composed.isDone());
+        next.postSuccess("done");
+        assertTrue("Composed task must be successful", composed.isSuccessful());
+        assertEquals("The value doesn't match", "done", composed.getValueNow());
+    }
+
+    @Test
+    public void cancelComposedCancelsTheCurrentTask() {
+        FutureImpl<Integer> future = createFuture();
+        final FutureImpl<String> next = createFuture(new Procedure() { @Override public void call() { } });
+        Future<String> composed = future.thenCompose(new Transformer<Integer, Future<String>>() {
+            @Override
+            public Future<String> call(Integer arg) {
+                return next;
+            }
+        });
+
+        future.postSuccess(1);
+        composed.cancel(true);
+        assertTrue("Composed task must be cancelled", composed.isCancelled());
+        assertTrue("Next task must be cancelled", next.isCancelled());
+    }
+
+    @Test
+    public void allOfWaitsForAll() {
+        FutureImpl<Integer> a = createFuture(), b = createFuture();
+        Future<List<Integer>> all = Futures.allOf(service, a, b);
+
+        b.postSuccess(2);
+        assertTrue("All task must not be done", !all.isDone());
+        a.postSuccess(1);
+        assertTrue("All task must be successful", all.isSuccessful());
+        assertEquals("Values must keep the order", Arrays.asList(1, 2), all.getValueNow());
+    }
+
+    @Test
+    public void allOfFailsWithFirstFailure() {
+        FutureImpl<Integer> a = createFuture(), b = createFuture();
+        Future<List<Integer>> all = Futures.allOf(service, a, b);
+
+        RuntimeException cause = new RuntimeException();
+        a.postError(cause);
+        assertTrue("All task must be done", all.isDone());
+        assertSame("Cause must be the same", cause, all.cause());
+        b.postSuccess(2);
+    }
+
+    @Test
+    public void allOfEmptyIsSuccessful() {
+        Future<List<Integer>> all = Futures.allOf(service, Arrays.<Future<Integer>>asList());
+        assertTrue("All task must be successful", all.isSuccessful());
+        assertTrue("Values must be empty", all.getValueNow().isEmpty());
+    }
+
+    @Test
+    public void anyOfCompletesWithTheFirst() {
+        FutureImpl<Integer> a = createFuture(), b = createFuture();
+        Future<Integer> any = Futures.anyOf(service, a, b);
+
+        b.postSuccess(2);
+        assertTrue("Any task must be successful", any.isSuccessful());
+        assertEquals("The value doesn't match", 2, (int) any.getValueNow());
+        a.postSuccess(1);
+        assertEquals("The value doesn't match", 2, (int) any.getValueNow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void anyOfNeedsOneTask() {
+        Futures.anyOf(service, Arrays.<Future<Integer>>asList());
+    }
+
+    @Test
+    public void withTimeoutFailsWhenTimedOut() throws Exception {
+        FutureImpl<Integer> future = createFuture(new Procedure() { @Override public void call() { } });
+        Future<Integer> timed = future.withTimeout(1);
+        try {
+            timed.getValue();
+            fail("getValue() must throw");
+        } catch(ExecutionException e) {
+            assertTrue("Cause must be a TimeoutException", e.getCause() instanceof TimeoutException);
+        }
+        assertTrue("Source task must be cancelled", future.isCancelled());
+    }
+
+    @Test
+    public void withTimeoutKeepsTheValue() {
+        FutureImpl<Integer> future = createFuture();
+        Future<Integer> timed = future.withTimeout(1000);
+        future.postSuccess(4);
+        assertTrue("Timed task must be successful", timed.isSuccessful());
+        assertEquals("The value doesn't match", 4, (int) timed.getValueNow());
+    }
+
+    @Test
+    public void cancelledSourceCancelsMapped() {
+        FutureImpl<Integer> future = createFuture(new Procedure() { @Override public void call() { } });
+        Future<Integer> mapped = future.map(new Transformer<Integer, Integer>() {
+            @Override
+            public Integer call(Integer arg) {
+                return arg;
+            }
+        });
+
+        future.cancel(true);
+        assertTrue("Mapped task must be cancelled", mapped.isCancelled());
+        assertTrue("Cause must be a CancellationException", mapped.cause() instanceof CancellationException);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        service.cancel();
+    }
+
+    private <ReturnType> FutureImpl<ReturnType> createFuture(Procedure p) {
+        return new FutureImpl<>(service, p);
+    }
+
+    private <ReturnType> FutureImpl<ReturnType> createFuture() {
+        return createFuture(null);
+    }
+}
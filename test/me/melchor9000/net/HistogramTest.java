@@ -0,0 +1,88 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Histogram}
+ */
+public class HistogramTest {
+    @Test
+    public void emptyHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.sum());
+        assertEquals(0, histogram.mean(), 0);
+        assertEquals(0, histogram.quantile(0.99));
+    }
+
+    @Test
+    public void recordsInPowerOfTwoBuckets() {
+        Histogram histogram = new Histogram();
+        for(int i = 0; i < 90; i++) histogram.record(100);
+        for(int i = 0; i < 10; i++) histogram.record(5000);
+        histogram.record(-5);
+        assertEquals(101, histogram.count());
+        assertEquals(90 * 100 + 10 * 5000, histogram.sum());
+        assertEquals((90 * 100 + 10 * 5000) / 101.0, histogram.mean(), 0.001);
+        assertEquals("100 is in [64, 128)", 127, histogram.quantile(0.5));
+        assertEquals("5000 is in [4096, 8192)", 8191, histogram.quantile(0.99));
+        assertEquals("Negative values are counted as 0", 0, histogram.quantile(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantileOutOfRange() {
+        new Histogram().quantile(1.5);
+    }
+
+    @Test
+    public void recordsFromManyThreads() throws Exception {
+        final Histogram histogram = new Histogram();
+        final int threads = 8, records = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for(int i = 0; i < threads; i++) {
+            final long value = 1L << (i * 4);
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch(InterruptedException ignore) {}
+                    for(int j = 0; j < records; j++) histogram.record(value);
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for(Thread worker : workers) worker.join();
+
+        assertEquals("No record must be lost", (long) threads * records, histogram.count());
+        long sum = 0;
+        for(int i = 0; i < threads; i++) sum += (1L << (i * 4)) * records;
+        assertEquals(sum, histogram.sum());
+        assertEquals("The stripes must be merged by bucket", (1L << (threads * 4 - 3)) - 1, histogram.quantile(1));
+        assertEquals("The stripes must be merged by bucket", 1, histogram.quantile(1.0 / threads));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the timeouts of {@link IOService}
+ */
+public class IOServiceTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        service.cancel();
+    }
+
+    @Test
+    public void timeoutExpiresInTheEventLoop() throws Exception {
+        final CountDownLatch expired = new CountDownLatch(1);
+        final AtomicBoolean inEventLoop = new AtomicBoolean();
+        long start = System.nanoTime();
+        Timeout timeout = service.timeout(new Procedure() {
+            @Override
+            public void call() {
+                inEventLoop.set(service.currentEventLoop() != null);
+                expired.countDown();
+            }
+        }, 100);
+
+        assertTrue("The timeout must expire", expired.await(5, TimeUnit.SECONDS));
+        assertTrue("Expired before its time", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue("Must run in the event loop", inEventLoop.get());
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.isCancelled());
+        assertFalse("An expired timeout cannot be cancelled", timeout.cancel());
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotRun() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        Timeout timeout = service.timeout(new Procedure() {
+            @Override
+            public void call() {
+                ran.set(true);
+            }
+        }, 50);
+
+        assertTrue("Must be cancelled by this call", timeout.cancel());
+        assertFalse("Can be cancelled only once", timeout.cancel());
+        Thread.sleep(200);
+        assertFalse("A cancelled timeout must not run", ran.get());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void cancellingAServiceKeepsTheTimeoutsOfTheOthers() throws Exception {
+        IOService other = new IOService();
+        final AtomicBoolean otherRan = new AtomicBoolean();
+        other.timeout(new Procedure() {
+            @Override
+            public void call() {
+                otherRan.set(true);
+            }
+        }, 100);
+        other.cancel();
+
+        final CountDownLatch expired = new CountDownLatch(1);
+        service.timeout(new Procedure() {
+            @Override
+            public void call() {
+                expired.countDown();
+            }
+        }, 100);
+        assertTrue("The timeouts of the running service must expire", expired.await(5, TimeUnit.SECONDS));
+        assertFalse("The timeouts of a cancelled service must not run", otherRan.get());
+
+        try {
+            other.timeout(new Procedure() {
+                @Override
+                public void call() {}
+            }, 10);
+            fail("A cancelled service must reject new timeouts");
+        } catch(IllegalStateException e) {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for stopping the shared timer of {@link IOService}. There's no service kept
+ * between the tests, so the ones cancelled here are the last users of the timer.
+ */
+public class IOServiceTimerTest {
+    @Test
+    public void cancelFromTheTimerThreadStopsTheTimer() throws Exception {
+        final IOService service = new IOService();
+        final AtomicReference<Thread> timerThread = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        //The onLag listener runs in the timer thread
+        service.setLagProbe(20, 50, new Callback<EventLoopMetrics>() {
+            @Override
+            public void call(EventLoopMetrics arg) {
+                timerThread.set(Thread.currentThread());
+                try {
+                    service.cancelAsync();
+                } catch(Throwable t) {
+                    error.set(t);
+                }
+                release.countDown();
+                cancelled.countDown();
+            }
+        });
+        service.post(new Procedure() {
+            @Override
+            public void call() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch(InterruptedException ignore) {}
+            }
+        });
+
+        assertTrue("The lag must be detected", cancelled.await(5, TimeUnit.SECONDS));
+        assertNull("Cancelling from the timer thread must not fail", error.get());
+        timerThread.get().join(5000);
+        assertFalse("The timer thread must stop", timerThread.get().isAlive());
+        checkNewTimer();
+    }
+
+    @Test
+    public void cancelFromATimeoutStopsTheTimer() throws Exception {
+        final IOService service = new IOService();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        service.timeout(new Procedure() {
+            @Override
+            public void call() {
+                try {
+                    service.cancelAsync();
+                } catch(Throwable t) {
+                    error.set(t);
+                }
+                cancelled.countDown();
+            }
+        }, 10);
+
+        assertTrue("The timeout must expire", cancelled.await(5, TimeUnit.SECONDS));
+        assertNull("Cancelling from a timeout must not fail", error.get());
+        checkNewTimer();
+    }
+
+    /**
+     * Checks that the timeouts of a new service still work
+     */
+    private static void checkNewTimer() throws Exception {
+        IOService other = new IOService();
+        try {
+            final CountDownLatch expired = new CountDownLatch(1);
+            other.timeout(new Procedure() {
+                @Override
+                public void call() {
+                    expired.countDown();
+                }
+            }, 10);
+            assertTrue("The timeouts of a new service must expire", expired.await(5, TimeUnit.SECONDS));
+        } finally {
+            other.cancel();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the idle timeouts of {@link TCPSocket} and {@link TCPAcceptor}
+ */
+public class IdleTimeoutTest {
+    private static IOService service;
+    private ServerSocket server;
+    private java.net.Socket serverSide;
+    private TCPSocket socket;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        socket = new TCPSocket(service);
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+        serverSide = server.accept();
+        serverSide.setSoTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        socket.close();
+        serverSide.close();
+        server.close();
+    }
+
+    @Test
+    public void readerIdleClosesTheConnection() throws Exception {
+        ByteBuf buf = Unpooled.buffer(16);
+        long start = System.currentTimeMillis();
+        socket.setIdleTimeouts(200, 0, 0);
+        Future<Long> receive = socket.receiveAsync(buf);
+        try {
+            receive.getValue(5000);
+            fail("The receive must fail");
+        } catch(ExecutionException e) {
+            assertTrue("Must fail with a SocketTimeoutException", e.getCause() instanceof SocketTimeoutException);
+        } finally {
+            buf.release();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Closed after " + elapsed + "ms, before the timeout", elapsed >= 150);
+        socket.onClose().getValue(5000);
+        assertEquals("The peer must see the close", -1, serverSide.getInputStream().read());
+    }
+
+    @Test
+    public void receivedDataKeepsTheConnectionOpen() throws Exception {
+        socket.setIdleTimeouts(300, 0, 0);
+        OutputStream out = serverSide.getOutputStream();
+        for(int i = 0; i < 8; i++) {
+            Thread.sleep(100);
+            out.write(i);
+            out.flush();
+        }
+        assertTrue("Must be open while receiving data", socket.isOpen());
+        socket.onClose().getValue(5000);
+    }
+
+    @Test
+    public void writerIdleIgnoresReceivedData() throws Exception {
+        socket.setIdleTimeouts(0, 300, 0);
+        OutputStream out = serverSide.getOutputStream();
+        long start = System.currentTimeMillis();
+        try {
+            while(socket.isOpen() && System.currentTimeMillis() - start < 5000) {
+                out.write(0);
+                out.flush();
+                Thread.sleep(50);
+            }
+        } catch(IOException ignore) {
+            //Closed while writing
+        }
+        assertFalse("Must be closed while nothing is sent", socket.isOpen());
+    }
+
+    @Test
+    public void acceptedConnectionsUseTheChildTimeouts() throws Exception {
+        TCPAcceptor acceptor = new TCPAcceptor(service);
+        acceptor.setChildIdleTimeouts(200, 0, 0);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        try {
+            client.setSoTimeout(5000);
+            TCPSocket accepted = acceptor.accept();
+            accepted.onClose().getValue(5000);
+            assertEquals("The client must see the close", -1, client.getInputStream().read());
+        } finally {
+            client.close();
+            acceptor.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link MultiplexedClient}, with frames of {@code [id][length][text]}
+ */
+public class MultiplexedClientTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static IOService service;
+    private ServerSocket server;
+    private java.net.Socket serverSide;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private TCPSocket socket;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        socket = new TCPSocket(service);
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+        serverSide = server.accept();
+        serverSide.setSoTimeout(10000);
+        in = new DataInputStream(serverSide.getInputStream());
+        out = new DataOutputStream(serverSide.getOutputStream());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        socket.close();
+        serverSide.close();
+        server.close();
+    }
+
+    @Test
+    public void responsesAreMatchedByIdentifier() throws Exception {
+        MultiplexedClient<String, String[]> client = new MultiplexedClient<>(socket, new Codec());
+        List<Future<String[]>> futures = new ArrayList<>();
+        for(int i = 0; i < 100; i++) futures.add(client.requestAsync("request " + i));
+
+        int[] ids = new int[100];
+        for(int i = 0; i < 100; i++) {
+            ids[i] = in.readInt();
+            assertEquals("request " + i, readText());
+        }
+        assertEquals(100, client.pendingRequests());
+        for(int i = 99; i >= 0; i--) writeFrame(ids[i], "response " + i);
+
+        for(int i = 0; i < 100; i++) assertEquals("response " + i, futures.get(i).getValue(5000)[1]);
+        assertEquals(0, client.pendingRequests());
+    }
+
+    @Test
+    public void requestTimesOut() throws Exception {
+        MultiplexedClient<String, String[]> client = new MultiplexedClient<>(socket, new Codec());
+        Future<String[]> future = client.requestAsync("never answered", 100);
+        int id = in.readInt();
+        readText();
+        try {
+            future.getValue(5000);
+            fail("The request must time out");
+        } catch(ExecutionException e) {
+            assertTrue("Must fail with a TimeoutException", e.getCause() instanceof TimeoutException);
+        }
+
+        //A late response is discarded, the next ones still work
+        writeFrame(id, "late");
+        Future<String[]> next = client.requestAsync("next");
+        int nextId = in.readInt();
+        readText();
+        writeFrame(nextId, "on time");
+        assertEquals("on time", next.getValue(5000)[1]);
+    }
+
+    @Test
+    public void closeFailsPendingRequests() throws Exception {
+        MultiplexedClient<String, String[]> client = new MultiplexedClient<>(socket, new Codec());
+        Future<String[]> future = client.requestAsync("request");
+        in.readInt();
+        readText();
+        serverSide.close();
+        try {
+            future.getValue(5000);
+            fail("The request must fail");
+        } catch(ExecutionException e) {
+            assertTrue("Must fail with a ClosedChannelException", e.getCause() instanceof ClosedChannelException);
+        }
+    }
+
+    @Test
+    public void dataReceivedBeforeTheClientIsKept() throws Exception {
+        //The start of the first response arrives before the client is created
+        out.write(new byte[] { 0, 0 });
+        out.flush();
+        Thread.sleep(100);
+        MultiplexedClient<String, String[]> client = new MultiplexedClient<>(socket, new Codec());
+        Future<String[]> future = client.requestAsync("request");
+        int id = in.readInt();
+        readText();
+        assertEquals("The first identifier must be 0", 0, id);
+        out.write(new byte[] { 0, 0 });
+        out.writeInt(8);
+        out.write("response".getBytes(UTF8));
+        out.flush();
+        assertEquals("response", future.getValue(5000)[1]);
+    }
+
+    private String readText() throws Exception {
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        return new String(text, UTF8);
+    }
+
+    private void writeFrame(int id, String text) throws Exception {
+        byte[] bytes = text.getBytes(UTF8);
+        out.writeInt(id);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static class Codec implements MultiplexCodec<String, String[]> {
+        @Override
+        public void encode(String request, int id, ByteBuf out) {
+            byte[] bytes = request.getBytes(UTF8);
+            out.writeInt(id).writeInt(bytes.length).writeBytes(bytes);
+        }
+
+        @Override
+        public String[] decode(ByteBuf in) {
+            if(in.readableBytes() < 8) return null;
+            int length = in.getInt(in.readerIndex() + 4);
+            if(in.readableBytes() < 8 + length) return null;
+            int id = in.readInt();
+            in.skipBytes(4);
+            return new String[] { String.valueOf(id), in.readCharSequence(length, UTF8).toString() };
+        }
+
+        @Override
+        public int correlationId(String[] response) {
+            return Integer.parseInt(response[0]);
+        }
+    }
+}
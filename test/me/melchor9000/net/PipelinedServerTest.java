@@ -0,0 +1,154 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link PipelinedServer}, using a line based protocol over loopback
+ */
+public class PipelinedServerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static IOService service;
+    private TCPAcceptor acceptor;
+    private ExecutorService executor;
+    private final AtomicInteger serving = new AtomicInteger();
+    private final AtomicInteger maxServing = new AtomicInteger();
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService(2);
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        acceptor.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void responsesAreWrittenInOrder() throws Exception {
+        PipelinedServer<String, String> server = createServer();
+        server.setExecutor(executor);
+        assertResponsesInOrder(2000);
+    }
+
+    @Test
+    public void responsesAreWrittenInOrderInTheEventLoop() throws Exception {
+        createServer();
+        assertResponsesInOrder(2000);
+    }
+
+    @Test
+    public void pipelinedRequestsAreLimited() throws Exception {
+        PipelinedServer<String, String> server = createServer();
+        server.setExecutor(executor);
+        server.setMaxPipelinedRequests(4);
+        assertResponsesInOrder(500);
+        assertTrue("Served more requests at the same time than the limit: " + maxServing.get(), maxServing.get() <= 4);
+    }
+
+    @Test
+    public void failedRequestClosesTheConnection() throws Exception {
+        createServer();
+        java.net.Socket client = connect();
+        client.getOutputStream().write("a\nfail\nb\n".getBytes(UTF8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), UTF8));
+        assertEquals("Response before the failure must be sent", "A", in.readLine());
+        assertNull("Connection must be closed", in.readLine());
+        client.close();
+    }
+
+    private void assertResponsesInOrder(int requests) throws Exception {
+        java.net.Socket client = connect();
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < requests; i++) sb.append("r").append(i).append('\n');
+        OutputStream out = client.getOutputStream();
+        out.write(sb.toString().getBytes(UTF8));
+        out.flush();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), UTF8));
+        for(int i = 0; i < requests; i++) assertEquals("Response out of order", "R" + i, in.readLine());
+        client.close();
+    }
+
+    private java.net.Socket connect() throws Exception {
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(10000);
+        return client;
+    }
+
+    private PipelinedServer<String, String> createServer() {
+        return new PipelinedServer<>(acceptor, new ServerCodec<String, String>() {
+            @Override
+            public String decode(ByteBuf in) {
+                int end = in.indexOf(in.readerIndex(), in.writerIndex(), (byte) '\n');
+                if(end < 0) return null;
+                String line = in.readCharSequence(end - in.readerIndex(), UTF8).toString();
+                in.skipBytes(1);
+                return line;
+            }
+
+            @Override
+            public void encode(String response, ByteBuf out) {
+                out.writeCharSequence(response + "\n", UTF8);
+            }
+        }, new RequestHandler<String, String>() {
+            @Override
+            public String handle(TCPSocket socket, String request) throws Exception {
+                if(request.equals("fail")) throw new IllegalStateException("Failed on purpose");
+                int now = serving.incrementAndGet();
+                int max;
+                while((max = maxServing.get()) < now && !maxServing.compareAndSet(max, now));
+                if(request.hashCode() % 4 == 0) Thread.sleep(1);
+                serving.decrementAndGet();
+                return request.toUpperCase();
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link Relay}, between a client connected to a {@link TCPAcceptor} and
+ * a {@link TCPSocket} connected to another server.
+ */
+public class RelayTest {
+    private static IOService service;
+    private static ExecutorService executor;
+    private TCPAcceptor acceptor;
+    private ServerSocket server;
+    private java.net.Socket client, remote;
+    private Relay relay;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        executor.shutdownNow();
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(10000);
+        TCPSocket first = acceptor.accept();
+
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        TCPSocket second = new TCPSocket(service);
+        second.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+        remote = server.accept();
+        remote.setSoTimeout(10000);
+
+        relay = SocketUtil.relay(first, second);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        relay.closeAsync().getValue(5000);
+        client.close();
+        remote.close();
+        server.close();
+        acceptor.close();
+    }
+
+    @Test
+    public void dataIsForwardedInBothDirections() throws Exception {
+        byte[] request = "request".getBytes("UTF-8");
+        byte[] response = "response".getBytes("UTF-8");
+        client.getOutputStream().write(request);
+        assertArrayEquals(request, read(remote.getInputStream(), request.length));
+        remote.getOutputStream().write(response);
+        assertArrayEquals(response, read(client.getInputStream(), response.length));
+        assertEquals(request.length, relay.bytesFromFirst().get());
+        assertEquals(response.length, relay.bytesFromSecond().get());
+    }
+
+    @Test
+    public void slowReceiverPausesTheSender() throws Exception {
+        final byte[] data = new byte[64 * 1024 * 1024];
+        new Random(3).nextBytes(data);
+        java.util.concurrent.Future<Void> writer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                OutputStream out = client.getOutputStream();
+                for(int i = 0; i < data.length; i += 64 * 1024) out.write(data, i, 64 * 1024);
+                out.flush();
+                return null;
+            }
+        });
+
+        //The remote doesn't read, so the relay must stop reading from the client
+        Thread.sleep(1000);
+        long forwarded = relay.bytesFromFirst().get();
+        assertFalse("The client must be blocked writing", writer.isDone());
+        Thread.sleep(500);
+        assertEquals("The relay must not read while the remote doesn't", forwarded, relay.bytesFromFirst().get());
+        assertTrue("Forwarded " + forwarded + " bytes without being read", forwarded < data.length / 2);
+
+        assertArrayEquals("The data doesn't match", data, read(remote.getInputStream(), data.length));
+        writer.get(10, TimeUnit.SECONDS);
+        assertEquals(data.length, relay.bytesFromFirst().get());
+    }
+
+    @Test
+    public void closeIsForwardedAfterThePendingData() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(5).nextBytes(data);
+        client.getOutputStream().write(data);
+        client.shutdownOutput();
+
+        InputStream in = remote.getInputStream();
+        assertArrayEquals("The data sent before the close must arrive", data, read(in, data.length));
+        assertEquals("The remote must see the end of stream", -1, in.read());
+        relay.onDone().getValue(5000);
+        assertEquals("The client must be closed too", -1, client.getInputStream().read());
+    }
+
+    private static byte[] read(InputStream in, int length) throws Exception {
+        byte[] bytes = new byte[length];
+        new DataInputStream(in).readFully(bytes);
+        return bytes;
+    }
+}
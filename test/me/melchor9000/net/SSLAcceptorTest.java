@@ -0,0 +1,261 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.X509Certificate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SSLAcceptor}
+ */
+public class SSLAcceptorTest {
+    private static IOService service;
+    private SSLAcceptor acceptor;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if(acceptor != null) acceptor.close();
+    }
+
+    @Test
+    public void handshakeTimeoutClosesSilentClients() throws Exception {
+        acceptor = TestCertificate.acceptor(service);
+        acceptor.setHandshakeTimeout(200);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(5000);
+        long start = System.currentTimeMillis();
+        try {
+            assertEquals("The server must close the connection", -1, client.getInputStream().read());
+        } catch(SocketException e) {
+            //Connection reset is also valid
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Closed after " + elapsed + "ms, before the timeout", elapsed >= 150);
+        assertTrue("Closed after " + elapsed + "ms, too late", elapsed < 2000);
+        client.close();
+    }
+
+    @Test
+    public void fileProviderLoadsTheCertificateWhenCreated() throws Exception {
+        File cert = copy(TestCertificate.certificate());
+        File key = copy(TestCertificate.privateKey());
+        try {
+            SSLFileCertificateProvider provider = new SSLFileCertificateProvider(cert, key);
+            assertTrue("The certificate must be loaded before any connection", provider.isLoaded());
+            try {
+                new SSLFileCertificateProvider(key, key);
+                fail("An invalid certificate must be rejected in the constructor");
+            } catch(IllegalArgumentException e) {
+                //Expected
+            }
+        } finally {
+            assertTrue(cert.delete());
+            assertTrue(key.delete());
+        }
+    }
+
+    @Test
+    public void hostCertificateIsSelectedWithSNI() throws Exception {
+        acceptor = TestCertificate.acceptor(service);
+        acceptor.addHostCertificate("other.localhost", new SSLCertificateProvider() {
+            @NotNull
+            @Override
+            protected SslContextBuilder newBuilder() throws IOException {
+                return SslContextBuilder.forServer(TestCertificate.otherCertificate(), TestCertificate.otherPrivateKey());
+            }
+        });
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        assertEquals("CN=other.localhost", servedCertificate("other.localhost"));
+        assertEquals("CN=localhost", servedCertificate("unknown.localhost"));
+        assertEquals("CN=localhost", servedCertificate(null));
+    }
+
+    @Test
+    public void applicationProtocolIsNegotiated() throws Exception {
+        SSLCertificateProvider provider = new SSLCertificateProvider() {
+            @NotNull
+            @Override
+            protected SslContextBuilder newBuilder() throws IOException {
+                return SslContextBuilder.forServer(TestCertificate.certificate(), TestCertificate.privateKey());
+            }
+        };
+        provider.setApplicationProtocols("h2", "http/1.1");
+        acceptor = new SSLAcceptor(service, provider);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        SSLSocket client = new SSLSocket(service, new SSLSocketConfigurator() {
+            @Override
+            public void configure(@NotNull SslContextBuilder builder) {
+                builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+                builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+                        ApplicationProtocolConfig.Protocol.ALPN,
+                        ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                        ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                        "http/1.1"
+                ));
+            }
+        });
+        client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort()));
+        SSLSocket server = (SSLSocket) acceptor.accept();
+        client.handshake();
+        server.handshake();
+        assertEquals("The client must get the common protocol", "http/1.1", client.applicationProtocol());
+        assertEquals("The server must get the common protocol", "http/1.1", server.applicationProtocol());
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void changedCertificateFilesAreUsedByNewConnections() throws Exception {
+        File dir = Files.createTempDirectory("async-net").toFile();
+        File cert = new File(dir, "cert.pem");
+        File key = new File(dir, "key.pem");
+        copy(TestCertificate.certificate(), cert);
+        copy(TestCertificate.privateKey(), key);
+        SSLFileCertificateProvider provider = new SSLFileCertificateProvider(cert, key);
+        try {
+            provider.watch();
+            acceptor = new SSLAcceptor(service, provider);
+            acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+            SSLSocket client = new SSLSocket(service, new SSLSocketConfigurator() {
+                @Override
+                public void configure(@NotNull SslContextBuilder builder) {
+                    builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+                }
+            });
+            client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort()));
+            SSLSocket server = (SSLSocket) acceptor.accept();
+            client.handshake();
+            assertEquals("CN=localhost", servedCertificate(null));
+
+            //Replaced as a renewal tool would do, moving the new files over the old ones
+            File newCert = new File(dir, "cert.pem.new");
+            File newKey = new File(dir, "key.pem.new");
+            copy(TestCertificate.otherCertificate(), newCert);
+            copy(TestCertificate.otherPrivateKey(), newKey);
+            Files.move(newKey.toPath(), key.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(newCert.toPath(), cert.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            String served = null;
+            long start = System.currentTimeMillis();
+            while(!"CN=other.localhost".equals(served) && System.currentTimeMillis() - start < 10000) {
+                Thread.sleep(100);
+                served = servedCertificate(null);
+            }
+            assertEquals("New connections must use the new certificate", "CN=other.localhost", served);
+
+            //The connection made before the change keeps working
+            client.sendAsync("ping");
+            ByteBuf received = Unpooled.buffer(4);
+            assertEquals(4, (long) server.receiveAsync(received, 4).getValue(5000));
+            assertEquals("ping", received.toString(Charset.forName("US-ASCII")));
+            server.sendAsync("pong");
+            received.clear();
+            assertEquals(4, (long) client.receiveAsync(received, 4).getValue(5000));
+            assertEquals("pong", received.toString(Charset.forName("US-ASCII")));
+            client.close();
+            server.close();
+        } finally {
+            provider.close();
+            assertTrue(cert.delete());
+            assertTrue(key.delete());
+            assertTrue(dir.delete());
+        }
+    }
+
+    /**
+     * Connects using {@code hostname} for SNI (none if null), checks the host name seen
+     * by the server and returns the subject of the certificate served
+     */
+    private String servedCertificate(String hostname) throws Exception {
+        SSLSocket client = new SSLSocket(service, new SSLSocketConfigurator() {
+            @Override
+            public void configure(@NotNull SslContextBuilder builder) {
+                builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+            }
+        });
+        //When the address has a host name, the client sends it with SNI
+        InetAddress address = hostname != null ?
+                InetAddress.getByAddress(hostname, InetAddress.getLoopbackAddress().getAddress()) :
+                InetAddress.getLoopbackAddress();
+        client.connect(new InetSocketAddress(address, ((InetSocketAddress) acceptor.channel.localAddress()).getPort()));
+        SSLSocket server = (SSLSocket) acceptor.accept();
+        try {
+            client.handshake();
+            server.handshake();
+            assertEquals("The server must see the SNI host name", hostname, server.serverName());
+            SslHandler handler = client.channel.pipeline().get(SslHandler.class);
+            X509Certificate certificate = (X509Certificate) handler.engine().getSession().getPeerCertificates()[0];
+            return certificate.getSubjectX500Principal().getName();
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    private static File copy(InputStream stream) throws Exception {
+        return copy(stream, File.createTempFile("async-net", ".pem"));
+    }
+
+    private static File copy(InputStream stream, File file) throws Exception {
+        try(OutputStream out = new FileOutputStream(file)) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = stream.read(buffer)) != -1) out.write(buffer, 0, read);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the client side of {@link SSLSocket}
+ */
+public class SSLSocketTest {
+    private static IOService service;
+    private SSLAcceptor acceptor;
+    private File trusted;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = TestCertificate.acceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        trusted = File.createTempFile("async-net", ".pem");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        acceptor.close();
+        assertTrue(trusted.delete());
+    }
+
+    @Test
+    public void changedCertificateFileIsLoadedAgain() throws Exception {
+        write(trusted, TestCertificate.otherCertificate());
+        assertFalse("The server must not be trusted", handshake());
+        assertFalse("The server must not be trusted with the cached context", handshake());
+
+        write(trusted, TestCertificate.certificate());
+        assertTrue("The new certificate file must be used", handshake());
+    }
+
+    private boolean handshake() throws Exception {
+        SSLSocket client = new SSLSocket(service, trusted);
+        try {
+            client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort()));
+            client.handshakeAsync().getValue(5000);
+            return true;
+        } catch(ExecutionException e) {
+            return false;
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void write(File file, InputStream stream) throws Exception {
+        long lastModified = file.lastModified();
+        try(OutputStream out = new FileOutputStream(file)) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = stream.read(buffer)) != -1) out.write(buffer, 0, read);
+        }
+        //Some file systems only store the modification time in seconds
+        assertTrue(file.setLastModified(lastModified + 2000));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.base64.Base64;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.CharsetUtil;
+import org.jetbrains.annotations.NotNull;
+
+import javax.net.ssl.KeyManagerFactory;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Loopback TLS throughput benchmark, comparing the JDK and the OpenSSL providers.
+ * It is not a test: run it with {@code main}. For the OpenSSL provider, add
+ * {@code io.netty:netty-tcnative-boringssl-static} to the classpath.
+ * <p>
+ * Arguments (optional): megabytes to send per run (default 512), size of every send in bytes
+ * (default 16384), and a certificate and a PKCS#8 RSA private key in {@code .pem} format (by
+ * default, the certificate of the tests).
+ */
+public class SSLThroughputBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 512;
+        int chunk = args.length > 1 ? Integer.parseInt(args[1]) : 16384;
+        InputStream certStream = args.length > 3 ? new FileInputStream(args[2]) : TestCertificate.certificate();
+        InputStream keyStream = args.length > 3 ? new FileInputStream(args[3]) : TestCertificate.privateKey();
+        X509Certificate cert = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(new ByteArrayInputStream(readPem(certStream)));
+        PrivateKey key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(readPem(keyStream)));
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("key", key, new char[0], new X509Certificate[] { cert });
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore, new char[0]);
+
+        System.out.println("OpenSSL available: " + OpenSsl.isAvailable() + (OpenSsl.isAvailable() ? " (" + OpenSsl.versionString() + ")" : ""));
+        IOService service = new IOService();
+        try {
+            for(SslProvider provider : new SslProvider[] { SslProvider.JDK, SslProvider.OPENSSL }) {
+                if(provider != SslProvider.JDK && !OpenSsl.isAvailable()) continue;
+                run(service, provider, factory, chunk, 2 * 1024 * 1024 * 16 / chunk);
+                double seconds = run(service, provider, factory, chunk, megabytes * 1024 * 1024 / chunk);
+                System.out.printf("%-8s %6d MiB in %7.3fs: %8.2f MiB/s%n", provider, megabytes, seconds, megabytes / seconds);
+            }
+        } finally {
+            service.cancel();
+        }
+    }
+
+    private static double run(IOService service, final SslProvider provider, final KeyManagerFactory factory, int chunk, final long sends) throws Exception {
+        final long total = sends * chunk;
+        final CountDownLatch received = new CountDownLatch(1);
+        SSLAcceptor acceptor = new SSLAcceptor(service, new SSLAcceptorConfigurator() {
+            @Override
+            @NotNull KeyManagerFactory getFactory() {
+                return factory;
+            }
+
+            @Override
+            public void configure(@NotNull SslContextBuilder builder) {}
+
+            @Override
+            public SslProvider sslProvider() {
+                return provider;
+            }
+        });
+        acceptor.setOnConnectionListener(new Callback<TCPSocket>() {
+            @Override
+            public void call(final TCPSocket socket) {
+                //Runs in the event loop, so it must not block
+                final ByteBuf buf = Unpooled.buffer(64 * 1024);
+                socket.receiveAsync(buf).whenDone(new Callback<Future<Long>>() {
+                    private long count;
+
+                    @Override
+                    public void call(Future<Long> future) {
+                        if(future.isSuccessful()) count += future.getValueNow();
+                        else System.err.println("Receive failed after " + count + " bytes: " + future.cause());
+                        if(!future.isSuccessful() || count == total) {
+                            buf.release();
+                            received.countDown();
+                            return;
+                        }
+                        buf.clear();
+                        socket.receiveAsync(buf).whenDone(this);
+                    }
+                });
+            }
+        });
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        SSLSocket client = new SSLSocket(service, new SSLSocketConfigurator() {
+            @Override
+            public void configure(@NotNull SslContextBuilder builder) {
+                builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+            }
+
+            @Override
+            public SslProvider sslProvider() {
+                return provider;
+            }
+        });
+        client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort()));
+
+        ByteBuf data = Unpooled.directBuffer(chunk).writeZero(chunk);
+        long start = System.nanoTime();
+        Future<Void> last = null;
+        for(long i = 0; i < sends; i++) {
+            last = client.sendAsync(data);
+            if(i % 64 == 63) last.sync();
+        }
+        if(last != null) last.sync();
+        received.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        data.release();
+        client.close();
+        acceptor.close();
+        return seconds;
+    }
+
+    private static byte[] readPem(InputStream stream) throws Exception {
+        StringBuilder base64 = new StringBuilder();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(stream, CharsetUtil.US_ASCII))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(!line.startsWith("-----")) base64.append(line.trim());
+            }
+        }
+        ByteBuf encoded = Unpooled.copiedBuffer(base64, CharsetUtil.US_ASCII);
+        ByteBuf decoded = Base64.decode(encoded);
+        byte[] bytes = new byte[decoded.readableBytes()];
+        decoded.readBytes(bytes);
+        encoded.release();
+        decoded.release();
+        return bytes;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SocketGroup}
+ */
+public class SocketGroupTest {
+    private static final int MEMBERS = 4;
+    private static IOService service;
+    private static IOService workers;
+    private TCPAcceptor acceptor;
+    private final List<java.net.Socket> clients = new ArrayList<>();
+    private final List<TCPSocket> servers = new ArrayList<>();
+    private SocketGroup group;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+        workers = new IOService(2);
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        workers.cancel();
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = new TCPAcceptor(service, workers);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        group = new SocketGroup(service);
+        for(int i = 0; i < MEMBERS; i++) {
+            java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+            client.setSoTimeout(10000);
+            clients.add(client);
+            TCPSocket server = acceptor.accept();
+            servers.add(server);
+            assertTrue(group.add(server));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for(java.net.Socket client : clients) client.close();
+        group.closeAsync().getValue(5000);
+        acceptor.close();
+    }
+
+    @Test
+    public void broadcastReachesMembersOnEveryLoop() throws Exception {
+        Set<EventLoop> loops = new HashSet<>();
+        for(TCPSocket server : servers) loops.add(server.channel.eventLoop());
+        assertEquals("The members must live in several event loops", 2, loops.size());
+
+        ByteBuf data = Unpooled.directBuffer().writeBytes("xxhello".getBytes("US-ASCII")).skipBytes(2);
+        Map<Socket, Throwable> failed = group.broadcastAsync(data).getValue(5000);
+        assertTrue("No member must fail", failed.isEmpty());
+        for(java.net.Socket client : clients) assertEquals("hello", read(client, 5));
+        for(TCPSocket server : servers) assertEquals(5, server.metrics().bytesSent().get());
+        assertEquals("The reader index must not change", 2, data.readerIndex());
+        assertEquals("The data must not be retained nor released", 1, data.refCnt());
+        data.release();
+    }
+
+    @Test
+    public void heapDataIsCopiedOnceAndReleased() throws Exception {
+        final List<ByteBuf> allocated = new ArrayList<>();
+        ByteBufAllocator allocator = new AbstractByteBufAllocator(true) {
+            @Override
+            protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+                return Unpooled.buffer(initialCapacity, maxCapacity);
+            }
+
+            @Override
+            protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+                ByteBuf buffer = Unpooled.directBuffer(initialCapacity, maxCapacity);
+                synchronized(allocated) {
+                    allocated.add(buffer);
+                }
+                return buffer;
+            }
+
+            @Override
+            public boolean isDirectBufferPooled() {
+                return false;
+            }
+        };
+        for(TCPSocket server : servers) server.channel.config().setAllocator(allocator);
+
+        ByteBuf data = Unpooled.wrappedBuffer("hello".getBytes("US-ASCII"));
+        assertTrue(group.broadcastAsync(data).getValue(5000).isEmpty());
+        for(java.net.Socket client : clients) assertEquals("hello", read(client, 5));
+        assertEquals("The data must be copied once, with the allocator of the sockets", 1, allocated.size());
+        assertEquals("The copy must be released", 0, allocated.get(0).refCnt());
+        assertEquals("The data must not be released", 1, data.refCnt());
+        assertEquals("The reader index must not change", 0, data.readerIndex());
+    }
+
+    @Test
+    public void failedMembersAreReported() throws Exception {
+        TCPSocket broken = servers.get(0);
+        broken.shutdownOutputAsync().getValue(5000);
+
+        Map<Socket, Throwable> failed = group.broadcastAsync(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 })).getValue(5000);
+        assertEquals("Only the member that cannot send must fail", 1, failed.size());
+        assertNotNull(failed.get(broken));
+        for(java.net.Socket client : clients.subList(1, clients.size())) assertEquals("\u0001\u0002\u0003", read(client, 3));
+    }
+
+    @Test
+    public void closedMembersAreRemoved() throws Exception {
+        servers.get(0).close();
+        servers.get(1).close();
+        assertEquals(MEMBERS - 2, group.size());
+        for(Socket member : group) assertTrue(member.channel.isOpen());
+
+        Map<Socket, Throwable> failed = group.broadcastAsync(Unpooled.wrappedBuffer(new byte[] { 1 })).getValue(5000);
+        assertTrue("Closed members must not be sent to", failed.isEmpty());
+    }
+
+    private static String read(java.net.Socket client, int length) throws Exception {
+        byte[] received = new byte[length];
+        new DataInputStream(client.getInputStream()).readFully(received);
+        return new String(received, "US-ASCII");
+    }
+}
@@ -0,0 +1,82 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link SocketMetrics}
+ */
+public class SocketMetricsTest {
+    private static IOService service;
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Test
+    public void sendsAndReceivesAreRecorded() throws Throwable {
+        TCPAcceptor acceptor = new TCPAcceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        TCPSocket server = acceptor.accept();
+        SocketMetrics metrics = server.metrics();
+        long serviceSent = service.metrics().bytesSent().get();
+        long serviceReceived = service.metrics().bytesReceived().get();
+        Histogram sendLatency = metrics.sendLatency();
+        assertSame("The histogram must be created once", sendLatency, metrics.sendLatency());
+
+        server.send(Unpooled.wrappedBuffer(new byte[10]));
+        server.send(Unpooled.wrappedBuffer(new byte[5]));
+        new DataInputStream(client.getInputStream()).readFully(new byte[15]);
+        assertEquals(15, metrics.bytesSent().get());
+        assertEquals(2, metrics.messagesSent().get());
+        assertEquals(2, sendLatency.count());
+        assertEquals("The service must include the socket", 15, service.metrics().bytesSent().get() - serviceSent);
+
+        client.getOutputStream().write(new byte[7]);
+        ByteBuf received = Unpooled.buffer(7);
+        long start = System.currentTimeMillis();
+        while(received.isWritable() && System.currentTimeMillis() - start < 5000) server.receive(received);
+        assertEquals(7, metrics.bytesReceived().get());
+        assertTrue(metrics.messagesReceived().get() >= 1);
+        assertEquals("The service must include the socket", 7, service.metrics().bytesReceived().get() - serviceReceived);
+        assertEquals(0, metrics.pendingReceives());
+
+        client.close();
+        server.close();
+        acceptor.close();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the gathering sends of {@link Socket}
+ */
+public class SocketTest {
+    private static IOService service;
+    private TCPAcceptor acceptor;
+    private java.net.Socket client;
+    private TCPSocket server;
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+        client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        client.setSoTimeout(10000);
+        server = acceptor.accept();
+        //Counts the messages that reach the network
+        server.channel.pipeline().addFirst(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                writes.incrementAndGet();
+                super.write(ctx, msg, promise);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.close();
+        acceptor.close();
+    }
+
+    @Test
+    public void sendAsyncVarargsGathersTheParts() throws Exception {
+        ByteBuf[] parts = parts();
+        server.sendAsync(parts).sync();
+        checkSent(parts);
+    }
+
+    @Test
+    public void sendAsyncIterableGathersTheParts() throws Exception {
+        ByteBuf[] parts = parts();
+        server.sendAsync(Arrays.asList(parts)).sync();
+        checkSent(parts);
+    }
+
+    @Test
+    public void sendVarargsGathersTheParts() throws Exception {
+        ByteBuf[] parts = parts();
+        assertEquals(9, server.send(parts));
+        checkSent(parts);
+    }
+
+    @Test
+    public void failingPartsDoNotLeak() throws Exception {
+        final ByteBuf part = Unpooled.directBuffer().writeBytes(new byte[] { 1, 2, 3 });
+        try {
+            server.sendAsync(part, null);
+            fail("A null part must fail");
+        } catch(NullPointerException ignore) {}
+        assertEquals("The retained slice must be released", 1, part.refCnt());
+
+        try {
+            server.sendAsync(new Iterable<ByteBuf>() {
+                @Override
+                public Iterator<ByteBuf> iterator() {
+                    return new Iterator<ByteBuf>() {
+                        private boolean first = true;
+
+                        @Override
+                        public boolean hasNext() {
+                            return true;
+                        }
+
+                        @Override
+                        public ByteBuf next() {
+                            if(!first) throw new IllegalStateException("Broken iterable");
+                            first = false;
+                            return part;
+                        }
+
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            });
+            fail("A failing iterable must fail");
+        } catch(IllegalStateException ignore) {}
+        assertEquals("The retained slice must be released", 1, part.refCnt());
+        assertEquals("Nothing must be written", 0, writes.get());
+        part.release();
+    }
+
+    private static ByteBuf[] parts() {
+        return new ByteBuf[] {
+                Unpooled.directBuffer().writeBytes(new byte[] { 0, 1, 2, 3 }).skipBytes(1),
+                Unpooled.EMPTY_BUFFER,
+                Unpooled.wrappedBuffer(new byte[] { 4, 5 }),
+                Unpooled.wrappedBuffer(new byte[] { 6, 7, 8, 9 })
+        };
+    }
+
+    private void checkSent(ByteBuf[] parts) throws Exception {
+        byte[] received = new byte[9];
+        new DataInputStream(client.getInputStream()).readFully(received);
+        assertArrayEquals("The parts must arrive in order", new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 }, received);
+        assertEquals("The parts must be sent in one write", 1, writes.get());
+        //The metrics are recorded by a listener that can run after the task is done
+        long start = System.currentTimeMillis();
+        while(server.metrics().messagesSent().get() == 0 && System.currentTimeMillis() - start < 5000) Thread.sleep(10);
+        assertEquals("The parts must be sent in one message", 1, server.metrics().messagesSent().get());
+        assertEquals("The reader index must not change", 1, parts[0].readerIndex());
+        for(ByteBuf part : parts) {
+            if(part != parts[0]) assertEquals("The reader index must not change", 0, part.readerIndex());
+            if(part != Unpooled.EMPTY_BUFFER) {
+                assertEquals("The parts must not be retained nor released", 1, part.refCnt());
+                part.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+    async-net: A basic asynchronous network library, based on netty
+    Copyright (C) 2016  melchor629 (melchor9000@gmail.com)
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package me.melchor9000.net;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the admission limits of {@link TCPAcceptor} and {@link SSLAcceptor}
+ */
+public class TCPAcceptorTest {
+    private static IOService service;
+    private TCPAcceptor acceptor;
+    private final List<java.net.Socket> clients = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUpService() throws Exception {
+        service = new IOService();
+    }
+
+    @AfterClass
+    public static void tearDownService() {
+        service.cancel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for(java.net.Socket client : clients) client.close();
+        if(acceptor != null) acceptor.close();
+    }
+
+    @Test
+    public void connectionLimitRejectsNewConnections() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.setMaxConnections(2);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        assertFalse(closedByServer(connect()));
+        assertFalse(closedByServer(connect()));
+        assertTrue("The third connection must be rejected", closedByServer(connect()));
+        assertEquals(1, acceptor.metrics().rejectedByConnectionLimit().get());
+
+        //Closing one makes room for another
+        acceptor.accept().close();
+        assertFalse("Must be accepted after closing one", closedByServer(connect()));
+    }
+
+    @Test
+    public void queueLimitRejectsNewConnections() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.setMaxQueuedConnections(2);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        assertFalse(closedByServer(connect()));
+        assertFalse(closedByServer(connect()));
+        assertTrue("The third connection must be rejected", closedByServer(connect()));
+        assertEquals(1, acceptor.metrics().rejectedByQueueLimit().get());
+
+        acceptor.accept();
+        assertFalse("Must be queued after accepting one", closedByServer(connect()));
+    }
+
+    @Test
+    public void rateLimitRejectsNewConnections() throws Exception {
+        acceptor = new TCPAcceptor(service);
+        acceptor.setAcceptRateLimit(0.01, 2);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        assertFalse(closedByServer(connect()));
+        assertFalse(closedByServer(connect()));
+        assertTrue("The third connection must be rejected", closedByServer(connect()));
+        assertEquals(1, acceptor.metrics().rejectedByRateLimit().get());
+    }
+
+    @Test
+    public void handshakingConnectionsCountAsQueued() throws Exception {
+        SSLAcceptor acceptor = TestCertificate.acceptor(service);
+        this.acceptor = acceptor;
+        acceptor.setDeliverAfterHandshake(true);
+        acceptor.setHandshakeTimeout(0);
+        acceptor.setMaxQueuedConnections(2);
+        acceptor.bind(InetAddress.getLoopbackAddress(), 0);
+
+        //The clients never start the handshake
+        assertFalse(closedByServer(connect()));
+        assertFalse(closedByServer(connect()));
+        assertTrue("The third connection must be rejected", closedByServer(connect()));
+        assertEquals(1, acceptor.metrics().rejectedByQueueLimit().get());
+        assertEquals("Nothing is delivered before the handshake", 0, acceptor.pendingConnections());
+    }
+
+    private java.net.Socket connect() throws IOException {
+        java.net.Socket client = new java.net.Socket(InetAddress.getLoopbackAddress(), ((InetSocketAddress) acceptor.channel.localAddress()).getPort());
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * @return true if the server closes the connection in a few seconds, false if it
+     * stays open for a while
+     */
+    private static boolean closedByServer(java.net.Socket client) throws IOException {
+        client.setSoTimeout(500);
+        try {
+            return client.getInputStream().read() == -1;
+        } catch(SocketTimeoutException e) {
+            return false;
+        } catch(SocketException e) {
+            return true;
+        }
+    }
+}